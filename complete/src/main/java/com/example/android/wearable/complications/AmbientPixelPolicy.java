@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.wearable.complications;
+
+/**
+ * Chooses how much ambient content to give up to stay within a budget of lit pixels.
+ *
+ * <p>Every measured ambient frame that lights more than the budget steps the level up by one, each
+ * level dropping more content than the one before. The level never steps down by itself, since a
+ * frame at a higher level says nothing about whether the content dropped would fit again; the
+ * owner calls {@link #reset} when the content is rebuilt.
+ */
+final class AmbientPixelPolicy {
+
+    /** Everything is drawn. */
+    static final int LEVEL_FULL = 0;
+
+    /** The background photo is left out of the ambient dial. */
+    static final int LEVEL_NO_BACKGROUND_IMAGE = 1;
+
+    /** Complication backgrounds are left out as well. */
+    static final int LEVEL_NO_COMPLICATION_BACKGROUNDS = 2;
+
+    /** Hands and ticks are drawn with thinner strokes as well. */
+    static final int LEVEL_THIN_STROKES = 3;
+
+    private static final int MAX_LEVEL = LEVEL_THIN_STROKES;
+
+    private final float mMaxOnPixelRatio;
+    private int mLevel = LEVEL_FULL;
+    private float mLastOnPixelRatio;
+
+    AmbientPixelPolicy(float maxOnPixelRatio) {
+        mMaxOnPixelRatio = maxOnPixelRatio;
+    }
+
+    int getLevel() {
+        return mLevel;
+    }
+
+    float getLastOnPixelRatio() {
+        return mLastOnPixelRatio;
+    }
+
+    /**
+     * Records the lit pixel ratio of an ambient frame drawn at the current level. Returns true if
+     * the level stepped up, in which case the caller should re-render the frame.
+     */
+    boolean onFrameMeasured(float onPixelRatio) {
+        mLastOnPixelRatio = onPixelRatio;
+        if (onPixelRatio > mMaxOnPixelRatio && mLevel < MAX_LEVEL) {
+            mLevel++;
+            return true;
+        }
+        return false;
+    }
+
+    /** Goes back to drawing everything, e.g. after the ambient content was rebuilt. */
+    void reset() {
+        mLevel = LEVEL_FULL;
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.wearable.complications;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decodes the user's background photo on a worker thread, sized for the watch face's surface.
+ *
+ * <p>A full-resolution photo can take tens of megabytes decoded, so the image is first decoded at
+ * the largest power-of-two subsampling that still covers the surface, then center-cropped and
+ * scaled to exactly the surface size as an opaque RGB_565 bitmap. Only that final bitmap outlives
+ * the load. Results are delivered on the main thread; a newer {@link #load} supersedes any load
+ * still in progress.
+ */
+class BackgroundImageLoader {
+
+    private static final String TAG = "BackgroundImageLoader";
+
+    /** Receives the loaded image on the main thread. */
+    interface Callback {
+        /**
+         * Called with the image sized to the requested surface, or null if there is no image or it
+         * could not be decoded. The receiver owns the bitmap.
+         */
+        void onBackgroundImageLoaded(Bitmap image);
+    }
+
+    private final ContentResolver mContentResolver;
+    private final Callback mCallback;
+
+    private final HandlerThread mThread;
+    private final Handler mWorkerHandler;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    // Incremented on the main thread for every load; older results are dropped.
+    private volatile int mGeneration;
+
+    BackgroundImageLoader(ContentResolver contentResolver, Callback callback) {
+        mContentResolver = contentResolver;
+        mCallback = callback;
+        mThread = new HandlerThread(TAG);
+        mThread.start();
+        mWorkerHandler = new Handler(mThread.getLooper());
+    }
+
+    /** Loads {@code uri} for a {@code width} x {@code height} surface. A null uri clears it. */
+    void load(final Uri uri, final int width, final int height) {
+        final int generation = ++mGeneration;
+        if (uri == null || width == 0 || height == 0) {
+            mCallback.onBackgroundImageLoaded(null);
+            return;
+        }
+        mWorkerHandler.post(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mGeneration) {
+                            return;
+                        }
+                        final Bitmap image = decode(uri, width, height);
+                        mMainHandler.post(
+                                new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        if (generation != mGeneration) {
+                                            if (image != null) {
+                                                image.recycle();
+                                            }
+                                            return;
+                                        }
+                                        mCallback.onBackgroundImageLoaded(image);
+                                    }
+                                });
+                    }
+                });
+    }
+
+    /** Cancels pending loads and stops the worker thread. */
+    void release() {
+        mGeneration++;
+        mThread.quitSafely();
+    }
+
+    private Bitmap decode(Uri uri, int width, int height) {
+        try {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            decodeStream(uri, options);
+            if (options.outWidth <= 0 || options.outHeight <= 0) {
+                Log.w(TAG, "Not an image: " + uri);
+                return null;
+            }
+
+            options.inJustDecodeBounds = false;
+            options.inSampleSize = computeSampleSize(options, width, height);
+            options.inPreferredConfig = Bitmap.Config.RGB_565;
+            Bitmap decoded = decodeStream(uri, options);
+            if (decoded == null) {
+                return null;
+            }
+
+            Bitmap image = Bitmap.createBitmap(width, height, Bitmap.Config.RGB_565);
+            Rect source = computeCenterCrop(decoded.getWidth(), decoded.getHeight(), width, height);
+            new Canvas(image)
+                    .drawBitmap(
+                            decoded,
+                            source,
+                            new Rect(0, 0, width, height),
+                            new Paint(Paint.FILTER_BITMAP_FLAG));
+            decoded.recycle();
+            return image;
+        } catch (IOException | SecurityException e) {
+            Log.w(TAG, "Failed to load background image " + uri, e);
+            return null;
+        }
+    }
+
+    private Bitmap decodeStream(Uri uri, BitmapFactory.Options options) throws IOException {
+        InputStream stream = mContentResolver.openInputStream(uri);
+        if (stream == null) {
+            throw new IOException("No content for " + uri);
+        }
+        try {
+            return BitmapFactory.decodeStream(stream, null, options);
+        } finally {
+            stream.close();
+        }
+    }
+
+    /* Largest power of two that keeps the decoded image at least as large as the surface. */
+    private static int computeSampleSize(BitmapFactory.Options options, int width, int height) {
+        int sampleSize = 1;
+        while (options.outWidth / (sampleSize * 2) >= width
+                && options.outHeight / (sampleSize * 2) >= height) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /* Part of a sourceWidth x sourceHeight image that fills a width x height surface. */
+    private static Rect computeCenterCrop(
+            int sourceWidth, int sourceHeight, int width, int height) {
+        if ((long) sourceWidth * height > (long) sourceHeight * width) {
+            int cropWidth = (int) ((long) sourceHeight * width / height);
+            int left = (sourceWidth - cropWidth) / 2;
+            return new Rect(left, 0, left + cropWidth, sourceHeight);
+        } else {
+            int cropHeight = (int) ((long) sourceWidth * height / width);
+            int top = (sourceHeight - cropHeight) / 2;
+            return new Rect(0, top, sourceWidth, top + cropHeight);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.wearable.complications;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+import android.os.PowerManager;
+
+/**
+ * Rendering tiers of the watch face by battery state: the lower the battery, the plainer the face.
+ *
+ * <p>The tier only depends on what a {@link PowerStateSource} reports, so every tier can be
+ * reached by handing the engine a source with made-up values instead of {@link
+ * SystemPowerStateSource}.
+ */
+final class BatterySaverPolicy {
+
+    /** Everything as designed. */
+    static final int TIER_FULL = 0;
+
+    /** No hand shadows, at most {@link #REDUCED_MAX_FRAMES_PER_SECOND}. */
+    static final int TIER_REDUCED = 1;
+
+    /**
+     * No anti-aliasing or shadows on the hands, small images replaced by their text description,
+     * and a ticking second hand at {@link #SAVER_MAX_FRAMES_PER_SECOND}.
+     */
+    static final int TIER_SAVER = 2;
+
+    /** Battery levels at or below which the reduced and saver tiers apply. */
+    static final int REDUCED_BATTERY_PERCENT = 30;
+    static final int SAVER_BATTERY_PERCENT = 15;
+
+    static final int REDUCED_MAX_FRAMES_PER_SECOND = 15;
+    static final int SAVER_MAX_FRAMES_PER_SECOND = 1;
+
+    /** Battery and power-save state the tier is chosen from. */
+    interface PowerStateSource {
+
+        /** Receives a call whenever any of the reported values may have changed. */
+        interface Listener {
+            void onPowerStateChanged();
+        }
+
+        int getBatteryPercent();
+
+        boolean isCharging();
+
+        boolean isPowerSaveMode();
+
+        /** Starts reporting changes to {@code listener}, or stops if it is null. */
+        void setListener(Listener listener);
+    }
+
+    private BatterySaverPolicy() {}
+
+    /** Returns the tier for the state reported by {@code source}. */
+    static int getTier(PowerStateSource source) {
+        if (source.isCharging()) {
+            return TIER_FULL;
+        }
+        int batteryPercent = source.getBatteryPercent();
+        if (source.isPowerSaveMode() || batteryPercent <= SAVER_BATTERY_PERCENT) {
+            return TIER_SAVER;
+        }
+        if (batteryPercent <= REDUCED_BATTERY_PERCENT) {
+            return TIER_REDUCED;
+        }
+        return TIER_FULL;
+    }
+
+    /** Returns the highest interactive frame rate allowed in {@code tier}. */
+    static int getMaxFramesPerSecond(int tier) {
+        switch (tier) {
+            case TIER_SAVER:
+                return SAVER_MAX_FRAMES_PER_SECOND;
+            case TIER_REDUCED:
+                return REDUCED_MAX_FRAMES_PER_SECOND;
+            default:
+                return FrameRatePolicy.VSYNC_FRAMES_PER_SECOND;
+        }
+    }
+
+    /** Reads the device's battery from its sticky broadcast and power-save mode from the system. */
+    static final class SystemPowerStateSource implements PowerStateSource {
+        private final Context mContext;
+        private final PowerManager mPowerManager;
+
+        private int mBatteryPercent = 100;
+        private boolean mCharging;
+        private Listener mListener;
+
+        private final BroadcastReceiver mReceiver =
+                new BroadcastReceiver() {
+                    @Override
+                    public void onReceive(Context context, Intent intent) {
+                        if (Intent.ACTION_BATTERY_CHANGED.equals(intent.getAction())) {
+                            readBattery(intent);
+                        }
+                        if (mListener != null) {
+                            mListener.onPowerStateChanged();
+                        }
+                    }
+                };
+
+        SystemPowerStateSource(Context context) {
+            mContext = context;
+            mPowerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        }
+
+        @Override
+        public int getBatteryPercent() {
+            return mBatteryPercent;
+        }
+
+        @Override
+        public boolean isCharging() {
+            return mCharging;
+        }
+
+        @Override
+        public boolean isPowerSaveMode() {
+            return mPowerManager.isPowerSaveMode();
+        }
+
+        @Override
+        public void setListener(Listener listener) {
+            if (listener != null && mListener == null) {
+                IntentFilter filter = new IntentFilter(Intent.ACTION_BATTERY_CHANGED);
+                filter.addAction(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED);
+                // ACTION_BATTERY_CHANGED is sticky, so the current battery state comes right back.
+                Intent batteryIntent = mContext.registerReceiver(mReceiver, filter);
+                if (batteryIntent != null) {
+                    readBattery(batteryIntent);
+                }
+            } else if (listener == null && mListener != null) {
+                mContext.unregisterReceiver(mReceiver);
+            }
+            mListener = listener;
+        }
+
+        private void readBattery(Intent intent) {
+            int level = intent.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+            int scale = intent.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+            if (level >= 0 && scale > 0) {
+                mBatteryPercent = level * 100 / scale;
+            }
+            mCharging = intent.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.wearable.complications;
+
+import android.graphics.Bitmap;
+import android.util.SparseArray;
+
+import java.util.ArrayList;
+
+/**
+ * Pool of mutable bitmaps for offscreen buffers, so surface size changes, ambient toggles and
+ * style changes reuse memory instead of allocating new bitmaps.
+ *
+ * <p>Free bitmaps are bucketed by allocation size in powers of two. A request is served by the
+ * smallest free bitmap with enough memory, reconfigured to the requested size and config, so e.g.
+ * an RGB_565 dial released when entering ambient mode can hold the ALPHA_8 dial that replaces it.
+ * Returned bitmaps are kept up to a byte cap and recycled beyond it.
+ *
+ * <p>Thread-safe: with a render thread, the main thread releases and acquires buffers on surface
+ * and tier changes while the render thread acquires them for frames.
+ */
+class BitmapPool {
+
+    private final long mMaxPooledBytes;
+
+    // Free bitmaps by bucket: bucket b holds allocations of (2^(b-1), 2^b] bytes.
+    private final SparseArray<ArrayList<Bitmap>> mFreeBitmaps = new SparseArray<>();
+
+    private long mPooledBytes;
+    private long mBorrowedBytes;
+    private long mPeakBytes;
+
+    BitmapPool(long maxPooledBytes) {
+        mMaxPooledBytes = maxPooledBytes;
+    }
+
+    /** Returns a mutable bitmap of the given size and config. Its contents are undefined. */
+    synchronized Bitmap acquire(int width, int height, Bitmap.Config config) {
+        int byteCount = width * height * bytesPerPixel(config);
+        Bitmap bitmap = takeFree(byteCount);
+        if (bitmap != null) {
+            bitmap.reconfigure(width, height, config);
+        } else {
+            bitmap = Bitmap.createBitmap(width, height, config);
+        }
+        mBorrowedBytes += bitmap.getAllocationByteCount();
+        updatePeak();
+        return bitmap;
+    }
+
+    /** Gives {@code bitmap} back to the pool. It must not be used by the caller afterwards. */
+    synchronized void release(Bitmap bitmap) {
+        if (bitmap == null) {
+            return;
+        }
+        int allocation = bitmap.getAllocationByteCount();
+        mBorrowedBytes -= allocation;
+        if (mPooledBytes + allocation > mMaxPooledBytes || !bitmap.isMutable()) {
+            bitmap.recycle();
+            return;
+        }
+        int bucket = bucketOf(allocation);
+        ArrayList<Bitmap> free = mFreeBitmaps.get(bucket);
+        if (free == null) {
+            free = new ArrayList<>();
+            mFreeBitmaps.put(bucket, free);
+        }
+        free.add(bitmap);
+        mPooledBytes += allocation;
+    }
+
+    /** Recycles every free bitmap. Borrowed bitmaps are not affected. */
+    synchronized void clear() {
+        for (int i = 0; i < mFreeBitmaps.size(); i++) {
+            ArrayList<Bitmap> free = mFreeBitmaps.valueAt(i);
+            for (int j = 0; j < free.size(); j++) {
+                free.get(j).recycle();
+            }
+        }
+        mFreeBitmaps.clear();
+        mPooledBytes = 0;
+    }
+
+    /** Returns the most memory held at once by borrowed and pooled bitmaps together. */
+    synchronized long getPeakBytes() {
+        return mPeakBytes;
+    }
+
+    synchronized long getPooledBytes() {
+        return mPooledBytes;
+    }
+
+    synchronized long getBorrowedBytes() {
+        return mBorrowedBytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "BitmapPool[borrowed=" + mBorrowedBytes + ", pooled=" + mPooledBytes
+                + ", peak=" + mPeakBytes + "]";
+    }
+
+    private Bitmap takeFree(int byteCount) {
+        // Looking one bucket up as well lets a slightly larger bitmap be reused, but never one
+        // more than four times the size needed.
+        int bucket = bucketOf(byteCount);
+        for (int b = bucket; b <= bucket + 1; b++) {
+            ArrayList<Bitmap> free = mFreeBitmaps.get(b);
+            if (free == null) {
+                continue;
+            }
+            int best = -1;
+            for (int i = 0; i < free.size(); i++) {
+                int allocation = free.get(i).getAllocationByteCount();
+                if (allocation >= byteCount
+                        && (best < 0 || allocation < free.get(best).getAllocationByteCount())) {
+                    best = i;
+                }
+            }
+            if (best >= 0) {
+                Bitmap bitmap = free.remove(best);
+                mPooledBytes -= bitmap.getAllocationByteCount();
+                return bitmap;
+            }
+        }
+        return null;
+    }
+
+    private void updatePeak() {
+        mPeakBytes = Math.max(mPeakBytes, mBorrowedBytes + mPooledBytes);
+    }
+
+    private static int bucketOf(int byteCount) {
+        return 32 - Integer.numberOfLeadingZeros(Math.max(byteCount - 1, 0));
+    }
+
+    private static int bytesPerPixel(Bitmap.Config config) {
+        switch (config) {
+            case ALPHA_8:
+                return 1;
+            case RGB_565:
+            case ARGB_4444:
+                return 2;
+            default:
+                return 4;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.wearable.complications;
+
+import android.content.Context;
+import android.support.wearable.complications.ComplicationData;
+import android.support.wearable.complications.ComplicationText;
+import android.text.TextUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Works out when the rendered output of a {@link ComplicationData} will next change on its own,
+ * i.e. without the provider sending new data.
+ *
+ * <p>That happens when the data contains time-dependent text (countdowns, "5 min ago", formatted
+ * times) or when the data has an active time window. Neither ComplicationText nor ComplicationData
+ * expose those times directly, so they are found by evaluating the text (or {@link
+ * ComplicationData#isActive(long)}) at increasing horizons and then binary searching for the exact
+ * millisecond it changes. This only runs when data arrives or a scheduled change fires, never per
+ * frame.
+ */
+final class ComplicationChangeTimes {
+
+    /** Returned when the output will not change until new data arrives. */
+    static final long NEVER = Long.MAX_VALUE;
+
+    // Horizons probed in order; most time-dependent text changes at one of these granularities.
+    private static final long[] PROBE_HORIZONS_MS = {
+        TimeUnit.SECONDS.toMillis(1),
+        TimeUnit.MINUTES.toMillis(1),
+        TimeUnit.HOURS.toMillis(1),
+        TimeUnit.DAYS.toMillis(1)
+    };
+
+    /*
+     * If nothing changes within the last horizon, text that is also unchanged this far ahead is
+     * treated as static. Anything else (e.g. "in 3 days") is re-checked after the last horizon.
+     */
+    private static final long STATIC_CHECK_MS = TimeUnit.DAYS.toMillis(365);
+
+    private ComplicationChangeTimes() {}
+
+    /**
+     * Returns the first time after {@code fromTime} at which {@code complicationData} renders
+     * differently, or {@link #NEVER} if it only changes when new data arrives.
+     */
+    static long getNextChangeTime(
+            Context context, ComplicationData complicationData, long fromTime) {
+        if (complicationData == null) {
+            return NEVER;
+        }
+
+        long nextChangeTime = getNextActiveChangeTime(complicationData, fromTime);
+
+        // Only look at the text fields that are valid for the type, to avoid library warnings.
+        switch (complicationData.getType()) {
+            case ComplicationData.TYPE_SHORT_TEXT:
+            case ComplicationData.TYPE_RANGED_VALUE:
+            case ComplicationData.TYPE_NO_PERMISSION:
+                nextChangeTime =
+                        Math.min(
+                                nextChangeTime,
+                                getNextChangeTime(
+                                        context, complicationData.getShortText(), fromTime));
+                nextChangeTime =
+                        Math.min(
+                                nextChangeTime,
+                                getNextChangeTime(
+                                        context, complicationData.getShortTitle(), fromTime));
+                break;
+            case ComplicationData.TYPE_LONG_TEXT:
+                nextChangeTime =
+                        Math.min(
+                                nextChangeTime,
+                                getNextChangeTime(
+                                        context, complicationData.getLongText(), fromTime));
+                nextChangeTime =
+                        Math.min(
+                                nextChangeTime,
+                                getNextChangeTime(
+                                        context, complicationData.getLongTitle(), fromTime));
+                break;
+            default:
+                break;
+        }
+        return nextChangeTime;
+    }
+
+    private static long getNextChangeTime(
+            final Context context, final ComplicationText text, long fromTime) {
+        if (text == null) {
+            return NEVER;
+        }
+        final CharSequence current = text.getText(context, fromTime);
+        return findNextChange(
+                new Probe() {
+                    @Override
+                    public boolean differsAt(long time) {
+                        return !TextUtils.equals(current, text.getText(context, time));
+                    }
+                },
+                fromTime);
+    }
+
+    private static long getNextActiveChangeTime(
+            final ComplicationData complicationData, long fromTime) {
+        final boolean active = complicationData.isActive(fromTime);
+        return findNextChange(
+                new Probe() {
+                    @Override
+                    public boolean differsAt(long time) {
+                        return complicationData.isActive(time) != active;
+                    }
+                },
+                fromTime);
+    }
+
+    private interface Probe {
+        boolean differsAt(long time);
+    }
+
+    /*
+     * Finds the earliest time after fromTime where the probe differs, assuming the output does not
+     * change and then change back within a single probe horizon.
+     */
+    private static long findNextChange(Probe probe, long fromTime) {
+        long lastSame = fromTime;
+        for (long horizon : PROBE_HORIZONS_MS) {
+            long candidate = fromTime + horizon;
+            if (probe.differsAt(candidate)) {
+                // The change lies in (lastSame, candidate]; narrow it down to the millisecond.
+                long low = lastSame;
+                long high = candidate;
+                while (high - low > 1) {
+                    long mid = low + (high - low) / 2;
+                    if (probe.differsAt(mid)) {
+                        high = mid;
+                    } else {
+                        low = mid;
+                    }
+                }
+                return high;
+            }
+            lastSame = candidate;
+        }
+
+        if (!probe.differsAt(fromTime + STATIC_CHECK_MS)) {
+            return NEVER;
+        }
+        return lastSame;
+    }
+}
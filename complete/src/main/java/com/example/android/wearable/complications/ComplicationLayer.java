@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.wearable.complications;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Rect;
+import android.support.wearable.complications.rendering.ComplicationDrawable;
+
+/**
+ * Offscreen render cache for a single complication slot.
+ *
+ * <p>Holds the last output of the slot's renderer in a bitmap the size of the
+ * slot's bounds, together with the inputs it was rendered from: data version, ambient mode, low-bit
+ * ambient, burn-in protection and bounds. The drawable is only asked to draw again when one of
+ * those inputs changes; every other frame is a single bitmap blit. The slot is rendered by its
+ * {@link LiteComplication} when there is one that can handle the data, otherwise by its
+ * {@link ComplicationDrawable}.
+ */
+class ComplicationLayer {
+
+    private final BitmapPool mBitmapPool;
+
+    private Bitmap mBitmap;
+    private Canvas mCanvas;
+
+    // Incremented every time new ComplicationData arrives for the slot.
+    private int mDataVersion;
+
+    // Inputs the current bitmap was rendered from.
+    private boolean mRendered;
+    private int mRenderedDataVersion;
+    private boolean mRenderedAmbient;
+    private boolean mRenderedLowBitAmbient;
+    private boolean mRenderedBurnInProtection;
+    private final Rect mRenderedBounds = new Rect();
+
+    ComplicationLayer(BitmapPool bitmapPool) {
+        mBitmapPool = bitmapPool;
+    }
+
+    /** Marks the cached render as stale because the slot received new data. */
+    void onDataChanged() {
+        mDataVersion++;
+    }
+
+    /** Forces the next {@link #update} to re-render regardless of its inputs. */
+    void invalidate() {
+        mRendered = false;
+    }
+
+    /** Returns whether there is a render for {@code bounds} to draw, current or not. */
+    boolean hasRender(Rect bounds) {
+        return mRendered && mRenderedBounds.equals(bounds);
+    }
+
+    /**
+     * Returns whether the cached bitmap was rendered from exactly these inputs and can be drawn
+     * as-is.
+     */
+    boolean isCurrent(
+            boolean ambient, boolean lowBitAmbient, boolean burnInProtection, Rect bounds) {
+        return mRendered
+                && mRenderedDataVersion == mDataVersion
+                && mRenderedAmbient == ambient
+                && mRenderedLowBitAmbient == lowBitAmbient
+                && mRenderedBurnInProtection == burnInProtection
+                && mRenderedBounds.equals(bounds);
+    }
+
+    /**
+     * Re-renders the slot into the cache if any of its inputs changed. Returns true if the slot was
+     * drawn again. {@code liteComplication} may be null to always use the drawable.
+     */
+    boolean update(
+            LiteComplication liteComplication,
+            ComplicationDrawable complicationDrawable,
+            long currentTimeMillis,
+            boolean ambient,
+            boolean lowBitAmbient,
+            boolean burnInProtection) {
+        Rect bounds = complicationDrawable.getBounds();
+        if (isCurrent(ambient, lowBitAmbient, burnInProtection, bounds)) {
+            return false;
+        }
+
+        if (bounds.isEmpty()) {
+            // Nothing to render until the surface has a size.
+            return false;
+        }
+
+        if (mBitmap == null
+                || mBitmap.getWidth() != bounds.width()
+                || mBitmap.getHeight() != bounds.height()) {
+            release();
+            mBitmap =
+                    mBitmapPool.acquire(bounds.width(), bounds.height(), Bitmap.Config.ARGB_8888);
+            mCanvas = new Canvas(mBitmap);
+        }
+
+        mBitmap.eraseColor(Color.TRANSPARENT);
+
+        // Both renderers draw at the slot's bounds, so shift them to the bitmap's origin.
+        mCanvas.save();
+        mCanvas.translate(-bounds.left, -bounds.top);
+        if (liteComplication == null || !liteComplication.draw(mCanvas, currentTimeMillis)) {
+            complicationDrawable.draw(mCanvas, currentTimeMillis);
+        }
+        mCanvas.restore();
+
+        mRendered = true;
+        mRenderedDataVersion = mDataVersion;
+        mRenderedAmbient = ambient;
+        mRenderedLowBitAmbient = lowBitAmbient;
+        mRenderedBurnInProtection = burnInProtection;
+        mRenderedBounds.set(bounds);
+        return true;
+    }
+
+    /** Draws the cached render at the bounds it was rendered for. */
+    void draw(Canvas canvas) {
+        if (mRendered && mBitmap != null) {
+            canvas.drawBitmap(mBitmap, mRenderedBounds.left, mRenderedBounds.top, null);
+        }
+    }
+
+    /** Returns the bitmap to the pool. */
+    void release() {
+        if (mBitmap != null) {
+            mBitmapPool.release(mBitmap);
+            mBitmap = null;
+            mCanvas = null;
+        }
+        mRendered = false;
+    }
+}
@@ -21,13 +21,24 @@ import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
+import android.content.SharedPreferences;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
+import android.graphics.ColorMatrix;
+import android.graphics.ColorMatrixColorFilter;
 import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Picture;
 import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.net.Uri;
 import android.os.Bundle;
+import android.os.Debug;
 import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.Message;
+import android.os.SystemClock;
 import android.support.wearable.complications.ComplicationData;
 import android.support.wearable.complications.ComplicationHelperActivity;
 import android.support.wearable.complications.rendering.ComplicationDrawable;
@@ -35,9 +46,11 @@ import android.support.wearable.watchface.CanvasWatchFaceService;
 import android.support.wearable.watchface.WatchFaceStyle;
 import android.util.Log;
 import android.util.SparseArray;
+import android.util.SparseBooleanArray;
+import android.util.SparseLongArray;
+import android.view.Choreographer;
 import android.view.SurfaceHolder;
 
-import java.util.Calendar;
 import java.util.TimeZone;
 import java.util.concurrent.TimeUnit;
 
@@ -108,25 +121,147 @@ public class ComplicationWatchFaceService extends CanvasWatchFaceService {
     }
 
     /*
-     * Update rate in milliseconds for interactive mode. We update once a second to advance the
-     * second hand.
+     * Where the user's background photo is stored: a content or file uri string under
+     * BACKGROUND_IMAGE_URI_KEY in the BACKGROUND_PREFERENCES_NAME preferences. Without one, the
+     * background is plain black.
      */
-    private static final long INTERACTIVE_UPDATE_RATE_MS = TimeUnit.SECONDS.toMillis(1);
+    static final String BACKGROUND_PREFERENCES_NAME = "watch_face_background";
+    static final String BACKGROUND_IMAGE_URI_KEY = "background_image_uri";
+
+    /*
+     * Boolean in the same preferences that moves drawing onto the hardware-accelerated canvas. Off
+     * by default: the software canvas keeps partial redraw, which saves more on most watches. See
+     * {@link RenderBackend}.
+     */
+    static final String HARDWARE_CANVAS_KEY = "hardware_canvas";
+
+    /*
+     * Preferred frame rate for interactive mode. Above 1 fps the second hand sweeps smoothly;
+     * {@link FrameRatePolicy} drops to a lower rate if drawing exceeds the CPU budget below.
+     */
+    private static final int PREFERRED_FRAMES_PER_SECOND = 30;
+
+    /* CPU time per minute that interactive drawing may use before the frame rate drops. */
+    private static final long CPU_BUDGET_US_PER_MINUTE = TimeUnit.SECONDS.toMicros(3);
+
+    /* (x, y) pairs the frame is shifted by on burn-in sensitive screens, one per minute. */
+    private static final float[] BURN_IN_OFFSETS = {
+        0, 0, 1, 0, 1, 1, 0, 1, -1, 1, -1, 0, -1, -1, 0, -1, 1, -1
+    };
+
+    /*
+     * Fills {@code points} with the endpoints of {@code tickCount} evenly spaced ticks around
+     * (centerX, centerY), starting at 12 o'clock, in the (x0, y0, x1, y1) layout expected by
+     * Canvas.drawLines().
+     */
+    private static void computeTickPoints(
+            float[] points,
+            int tickCount,
+            float centerX,
+            float centerY,
+            float innerRadius,
+            float outerRadius) {
+        for (int tickIndex = 0; tickIndex < tickCount; tickIndex++) {
+            double tickRot = tickIndex * Math.PI * 2 / tickCount;
+            float sin = (float) Math.sin(tickRot);
+            float cos = (float) -Math.cos(tickRot);
+            int offset = tickIndex * 4;
+            points[offset] = centerX + sin * innerRadius;
+            points[offset + 1] = centerY + cos * innerRadius;
+            points[offset + 2] = centerX + sin * outerRadius;
+            points[offset + 3] = centerY + cos * outerRadius;
+        }
+    }
+
+    /* Upper bound on memory kept in mBitmapPool for reuse: a few full-screen layers. */
+    private static final long MAX_POOLED_BITMAP_BYTES = 2 * 1024 * 1024;
+
+    /*
+     * Offscreen buffers of the engine are borrowed from and returned to this pool, so the
+     * reallocations at surface, ambient and style changes reuse memory instead of causing
+     * allocation spikes and GC pauses.
+     */
+    private final BitmapPool mBitmapPool = new BitmapPool(MAX_POOLED_BITMAP_BYTES);
 
     @Override
     public Engine onCreateEngine() {
         return new Engine();
     }
 
-    private class Engine extends CanvasWatchFaceService.Engine {
+    @Override
+    public void onDestroy() {
+        // Destroys the engines first, which hand their bitmaps back to the pool.
+        super.onDestroy();
+        Log.d(TAG, "onDestroy() " + mBitmapPool);
+        mBitmapPool.clear();
+    }
+
+    class Engine extends CanvasWatchFaceService.Engine {
         private static final int MSG_UPDATE_TIME = 0;
+        private static final int MSG_COMPLICATION_CHANGE = 1;
+        private static final int MSG_FRAME_DRAWN = 2;
 
         private static final float HOUR_AND_MINUTE_STROKE_WIDTH = 5f;
         private static final float SECOND_TICK_STROKE_WIDTH = 2f;
         private static final float CENTER_GAP_AND_CIRCLE_RADIUS = 4f;
         private static final int SHADOW_RADIUS = 6;
 
-        private Calendar mCalendar;
+        /*
+         * Number of ticks drawn around the dial. The tick geometry is computed for any count, so
+         * switching to 60 minute ticks costs nothing extra per frame.
+         */
+        private static final int TICK_COUNT = 12;
+        private static final float TICK_LENGTH = 10f;
+
+        private static final boolean PARTIAL_REDRAW_ENABLED = true;
+
+        /*
+         * Whether to lock the surface and draw frames on a dedicated render thread, so a slow
+         * frame never delays taps or complication data on the main thread. See
+         * {@link #mRenderThread}.
+         */
+        private static final boolean RENDER_ON_THREAD = false;
+
+        /* Longest onSurfaceRedrawNeeded() waits for the render thread to draw the surface. */
+        private static final long REDRAW_TIMEOUT_MS = 500;
+
+        /*
+         * Whether to draw the supported complication types with LiteComplicationRenderer instead of
+         * ComplicationDrawable. Other types always use ComplicationDrawable.
+         */
+        private static final boolean USE_LITE_COMPLICATION_RENDERERS = true;
+
+        /*
+         * Burn-in protection: in ambient mode the ticks and hands are drawn as thin outlines, and
+         * the whole composited frame is shifted by a few pixels every minute, cycling through
+         * BURN_IN_OFFSETS in units of BURN_IN_SHIFT_PX, so no pixel stays lit for long.
+         */
+        private static final float BURN_IN_OUTLINE_WIDTH = 1f;
+        private static final float BURN_IN_SHIFT_PX = 2f;
+
+        /*
+         * Share of the screen an ambient frame may light. Above it, {@link AmbientPixelPolicy}
+         * drops ambient content step by step, drawing hands and ticks at AMBIENT_THIN_STROKE_WIDTH
+         * at its last step. Frames are measured at every ON_PIXEL_SAMPLE_STEP-th pixel per axis.
+         */
+        private static final float MAX_AMBIENT_ON_PIXEL_RATIO = 0.15f;
+        private static final float AMBIENT_THIN_STROKE_WIDTH = 2f;
+        private static final int ON_PIXEL_SAMPLE_STEP = 2;
+
+        /*
+         * Whether to cache the static scene as a recorded Picture instead of bitmaps. See
+         * {@link #mStaticScenePicture}.
+         */
+        private static final boolean RECORD_STATIC_SCENE = false;
+
+        /* Brightness the background photo is dimmed to, after graying it, in ambient mode. */
+        private static final float AMBIENT_BACKGROUND_IMAGE_BRIGHTNESS = 0.4f;
+
+        /* Allocation-free local time for the draw loop; see {@link WallClock}. */
+        private WallClock mWallClock;
+
+        private final FrameRatePolicy mFrameRatePolicy =
+                new FrameRatePolicy(PREFERRED_FRAMES_PER_SECOND, CPU_BUDGET_US_PER_MINUTE);
         private boolean mRegisteredTimeZoneReceiver = false;
 
         private float mCenterX;
@@ -136,11 +271,254 @@ public class ComplicationWatchFaceService extends CanvasWatchFaceService {
         private float mMinuteHandLength;
         private float mSecondHandLength;
 
+        /*
+         * Tick endpoints (x0, y0, x1, y1 per tick) in screen coordinates, computed once per surface
+         * size so the ticks can be drawn with a single Canvas.drawLines() call.
+         */
+        private final float[] mTickPoints = new float[TICK_COUNT * 4];
+
         private Paint mHourMinuteTicksHandPaint;
         private Paint mSecondHandPaint;
 
+        private Paint mHandSpritePaint;
+
         private Paint mBackgroundPaint;
 
+        /*
+         * The user's background photo, decoded off the main thread by mBackgroundImageLoader at
+         * exactly the surface size. It is only drawn into the dial layers, together with the
+         * ticks, so every frame still draws the background with a single blit.
+         */
+        private Bitmap mBackgroundImage;
+        private BackgroundImageLoader mBackgroundImageLoader;
+        private SharedPreferences mBackgroundPreferences;
+
+        /* Draws the background photo grayscale and dimmed for the ambient dial. */
+        private Paint mAmbientBackgroundImagePaint;
+
+        private final BackgroundImageLoader.Callback mBackgroundImageCallback =
+                new BackgroundImageLoader.Callback() {
+                    @Override
+                    public void onBackgroundImageLoaded(Bitmap image) {
+                        if (image == null && mBackgroundImage == null) {
+                            return;
+                        }
+                        synchronized (Engine.this) {
+                            if (mBackgroundImage != null) {
+                                mBackgroundImage.recycle();
+                            }
+                            mBackgroundImage = image;
+                            rebuildModeLayers();
+                        }
+                        invalidate();
+                    }
+                };
+
+        private final SharedPreferences.OnSharedPreferenceChangeListener
+                mBackgroundPreferenceListener =
+                        new SharedPreferences.OnSharedPreferenceChangeListener() {
+                            @Override
+                            public void onSharedPreferenceChanged(
+                                    SharedPreferences preferences, String key) {
+                                if (BACKGROUND_IMAGE_URI_KEY.equals(key)) {
+                                    loadBackgroundImage();
+                                } else if (HARDWARE_CANVAS_KEY.equals(key)) {
+                                    loadRenderBackend();
+                                }
+                            }
+                        };
+
+        /*
+         * Cached layers for each display mode. Both sets are rendered whenever the surface size or
+         * screen properties change, so entering or leaving ambient mode (the wrist raise) only
+         * switches which set is composited. See {@link ModeLayers}.
+         */
+        private final ModeLayers mInteractiveLayers = new ModeLayers(false);
+        private final ModeLayers mAmbientLayers = new ModeLayers(true);
+
+        /*
+         * The stages every frame is composited from, set up by initializeRenderPipeline(). Changes
+         * to what the stages show are reported with mRenderPipeline.invalidate().
+         */
+        private final RenderPipeline mRenderPipeline = new RenderPipeline();
+
+        /* Blits ALPHA_8 dial layers in the tick color. */
+        private Paint mDialAlphaPaint;
+
+        /*
+         * Wrist raise latency: time from leaving ambient mode to the first interactive frame being
+         * posted, logged for every wrist raise together with running statistics.
+         */
+        private long mWristRaiseUptimeMillis = -1;
+        private int mWristRaiseCount;
+        private long mWristRaiseTotalLatencyMs;
+        private long mWristRaiseMaxLatencyMs;
+
+        /* Outline of the ticks, drawn with mBurnInOutlinePaint instead of the ticks themselves. */
+        private final Path mTickPath = new Path();
+        private final Path mTickOutlinePath = new Path();
+        private final Paint mTickStrokePaint = new Paint();
+        private Paint mBurnInOutlinePaint;
+
+        /*
+         * Lit pixel budget for ambient mode. Each ambient frame, whether rendered ahead of its
+         * minute or when it is due, is measured before it is shown; if it lights too much, the
+         * policy steps up and the frame is rendered again with less content.
+         */
+        private final OnPixelRatioMeter mOnPixelRatioMeter =
+                new OnPixelRatioMeter(ON_PIXEL_SAMPLE_STEP);
+        private final AmbientPixelPolicy mAmbientPixelPolicy =
+                new AmbientPixelPolicy(MAX_AMBIENT_ON_PIXEL_RATIO);
+
+        /*
+         * Battery saver tier from {@link BatterySaverPolicy}, re-evaluated whenever
+         * mPowerStateSource reports a change. The source reads the system's battery state unless
+         * another one is set with setPowerStateSource().
+         */
+        private BatterySaverPolicy.PowerStateSource mPowerStateSource;
+        private int mPowerTier = BatterySaverPolicy.TIER_FULL;
+
+        private final BatterySaverPolicy.PowerStateSource.Listener mPowerStateListener =
+                new BatterySaverPolicy.PowerStateSource.Listener() {
+                    @Override
+                    public void onPowerStateChanged() {
+                        updatePowerTier();
+                    }
+                };
+
+        /*
+         * Thermal status from {@link ThermalGovernor}, reported by mThermalStatusSource. The
+         * source follows the battery temperature unless another one is set with
+         * setThermalStatusSource().
+         */
+        private ThermalGovernor.ThermalStatusSource mThermalStatusSource;
+        // Volatile for scheduleNextComplicationChange(), which reads it without the monitor.
+        private volatile int mThermalStatus = ThermalGovernor.STATUS_NONE;
+
+        private final ThermalGovernor.ThermalStatusSource.Listener mThermalStatusListener =
+                new ThermalGovernor.ThermalStatusSource.Listener() {
+                    @Override
+                    public void onThermalStatusChanged() {
+                        updateThermalStatus();
+                    }
+                };
+
+        /* Ambient background color of the complication style, restored when the budget allows. */
+        private int mComplicationAmbientBackgroundColor;
+
+        /*
+         * Alternative to the dial and complication bitmaps: the background, ticks and complications
+         * recorded once into a display list and replayed every frame. Far smaller than full-screen
+         * bitmaps, while still skipping tick geometry and complication layout. Re-recorded by the
+         * dial stage only after onSurfaceChanged, onAmbientModeChanged, onPropertiesChanged or new
+         * complication data invalidates it.
+         */
+        private Picture mStaticScenePicture;
+
+        private int mSurfaceWidth;
+        private int mSurfaceHeight;
+
+        /*
+         * Partial redraw: in interactive mode the last composited frame is kept in mFrameBitmap and
+         * only the regions that changed since the previous frame (old and new second hand, updated
+         * complications) are repainted into it before it is copied to the screen. Any change that
+         * touches the whole face sets mFullRedrawPending instead.
+         */
+        private boolean mPartialRedrawEnabled = PARTIAL_REDRAW_ENABLED;
+
+        /*
+         * Backend that provides the canvas for each frame. Frames are scheduled and drawn by this
+         * engine (see {@link #invalidate()}) rather than by CanvasWatchFaceService, so the canvas
+         * can come from either backend. HARDWARE_CANVAS_KEY selects it.
+         */
+        private RenderBackend mRenderBackend = RenderBackend.SOFTWARE;
+
+        /*
+         * Set when the hardware backend is selected, so the first frame drawn with it is checked
+         * against the software backend. The engine stays on software if they don't match.
+         */
+        private boolean mRenderBackendCheckPending;
+        private Choreographer mChoreographer;
+        private boolean mDrawRequested;
+
+        private final Choreographer.FrameCallback mFrameCallback =
+                new Choreographer.FrameCallback() {
+                    @Override
+                    public void doFrame(long frameTimeNanos) {
+                        mDrawRequested = false;
+                        if (mRenderHandler != null) {
+                            postRenderFrame();
+                        } else {
+                            drawNow(System.currentTimeMillis());
+                        }
+                    }
+                };
+
+        /*
+         * Render thread mode: frames are scheduled on the main thread as before, but drawn on
+         * mRenderThread from a {@link FrameSnapshot} of the time and of the complication data
+         * received since the last frame. Everything the frames are drawn from is guarded by the
+         * engine's monitor: the methods that draw or change it are synchronized. The main thread
+         * only needs it for the rare changes that rebuild layers (surface, properties, ambient
+         * mode, tiers), never for taps, frame timer ticks, complication data or complication text
+         * changes, which go through the snapshot inputs under mSnapshotLock instead.
+         *
+         * Without a render thread, frames are drawn on the main thread and the monitor is never
+         * contended.
+         */
+        private HandlerThread mRenderThread;
+        private Handler mRenderHandler;
+
+        private final Object mSnapshotLock = new Object();
+        // Input collected for the next frame, and the snapshot the render thread draws from.
+        private FrameSnapshot mPendingSnapshot = new FrameSnapshot();
+        private FrameSnapshot mRenderSnapshot = new FrameSnapshot();
+        private boolean mRenderFramePosted;
+        // Snapshots taken and drawn by the render thread, so a caller can wait for its frame.
+        private long mSnapshotsTaken;
+        private long mSnapshotsDrawn;
+
+        /* Whether the surface can be drawn on; a destroyed surface must not be locked again. */
+        private boolean mSurfaceValid;
+        private boolean mDestroyed;
+
+        private final Runnable mRenderFrameRunnable =
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        renderFrameSnapshot(takeFrameSnapshot());
+                        synchronized (mSnapshotLock) {
+                            mSnapshotsDrawn++;
+                            mSnapshotLock.notifyAll();
+                        }
+                    }
+                };
+        /*
+         * Ambient frames are rendered offscreen into mAmbientFrameBitmap, so their lit pixels can
+         * be measured against the budget before they are shown. Right after the current ambient
+         * frame is posted, the frame for the start of the next minute is rendered into it as well
+         * (mAmbientAheadTimeMillis): when the next onTimeTick wakes the CPU, that frame only has to
+         * be blitted. Discarded whenever anything it shows changes before then.
+         */
+        private Bitmap mAmbientFrameBitmap;
+        private Canvas mAmbientFrameCanvas;
+        private long mAmbientAheadTimeMillis = -1;
+
+        /*
+         * Complication ids whose text changes by mAmbientAheadTimeMillis. Their ambient layers
+         * were rendered for that time along with the frame, so until it comes they show text
+         * ahead of the clock.
+         */
+        private final SparseBooleanArray mAmbientAheadComplicationIds = new SparseBooleanArray();
+
+        private Bitmap mFrameBitmap;
+        private Canvas mFrameCanvas;
+        private boolean mFullRedrawPending = true;
+        private int mLastDrawnMinute = -1;
+        private final Rect mDirtyRect = new Rect();
+        private final Rect mSecondHandBounds = new Rect();
+        private final Rect mLastSecondHandBounds = new Rect();
+
         private boolean mAmbient;
 
         /*
@@ -167,31 +545,113 @@ public class ComplicationWatchFaceService extends CanvasWatchFaceService {
          */
         private SparseArray<ComplicationDrawable> mComplicationDrawableSparseArray;
 
+        /* Maps complication ids to their lightweight renderers. Empty if
+         * USE_LITE_COMPLICATION_RENDERERS is false.
+         */
+        private SparseArray<LiteComplication> mLiteComplicationSparseArray;
+
+        /* Maps complication ids to the data last handed to their renderers, so the battery saver
+         * tier can hand the ComplicationDrawables a text-only version of it. Unlike
+         * mActiveComplicationDataSparseArray, only changed under the engine monitor, so the render
+         * thread can read it.
+         */
+        private final SparseArray<ComplicationData> mAppliedComplicationData = new SparseArray<>();
+
+        /* Complication ids whose ComplicationDrawable has their data, because it draws them. */
+        private final SparseBooleanArray mDrawableComplicationIds = new SparseBooleanArray();
+
+        /* Maps complication ids to the next time their rendered text changes on its own (e.g. a
+         * countdown), or ComplicationChangeTimes.NEVER for static data.
+         */
+        private SparseLongArray mComplicationNextChangeTimes;
+
+        /* The earliest of mComplicationNextChangeTimes, published for the change timer. */
+        private volatile long mEarliestComplicationChangeTime = ComplicationChangeTimes.NEVER;
+
+        /*
+         * Receives invalidateSelf() from the complication drawables, which they call outside of
+         * any data update, e.g. once an icon or image they load asynchronously has arrived. The
+         * cached renders of the slot are then stale. Drawables only keep a weak reference to
+         * their callback, hence the field.
+         */
+        private final Drawable.Callback mComplicationDrawableCallback =
+                new Drawable.Callback() {
+                    @Override
+                    public void invalidateDrawable(Drawable who) {
+                        if (Thread.holdsLock(Engine.this)) {
+                            // A side effect of a change the engine is making to the drawable
+                            // itself, which already invalidates what it affects.
+                            return;
+                        }
+                        for (int i = 0; i < COMPLICATION_IDS.length; i++) {
+                            if (mComplicationDrawableSparseArray.get(COMPLICATION_IDS[i]) == who) {
+                                onComplicationInvalidated(COMPLICATION_IDS[i]);
+                                return;
+                            }
+                        }
+                    }
+
+                    @Override
+                    public void scheduleDrawable(Drawable who, Runnable what, long when) {
+                        mUpdateTimeHandler.postAtTime(what, who, when);
+                    }
+
+                    @Override
+                    public void unscheduleDrawable(Drawable who, Runnable what) {
+                        mUpdateTimeHandler.removeCallbacks(what, who);
+                    }
+                };
+
         private final BroadcastReceiver mTimeZoneReceiver =
                 new BroadcastReceiver() {
                     @Override
                     public void onReceive(Context context, Intent intent) {
-                        mCalendar.setTimeZone(TimeZone.getDefault());
+                        synchronized (Engine.this) {
+                            onTimeZoneChanged();
+                        }
                         invalidate();
                     }
                 };
 
-        // Handler to update the time once a second in interactive mode.
+        /*
+         * Handler to update the time at the current frame rate in interactive mode. At vsync
+         * rates it only kicks off the first frame; onInteractiveFrameDrawn() then requests the
+         * following ones.
+         */
         private final Handler mUpdateTimeHandler =
                 new Handler() {
                     @Override
                     public void handleMessage(Message message) {
+                        if (message.what == MSG_FRAME_DRAWN) {
+                            // Sent from the render thread, as the frame rate policy is only used
+                            // on the main thread.
+                            onInteractiveFrameDrawn(message.arg1);
+                            return;
+                        }
                         invalidate();
-                        if (shouldTimerBeRunning()) {
-                            long timeMs = System.currentTimeMillis();
+                        if (shouldTimerBeRunning() && !mFrameRatePolicy.isVsyncDriven()) {
                             long delayMs =
-                                    INTERACTIVE_UPDATE_RATE_MS
-                                            - (timeMs % INTERACTIVE_UPDATE_RATE_MS);
+                                    mFrameRatePolicy.getDelayToNextFrameMs(
+                                            System.currentTimeMillis());
                             mUpdateTimeHandler.sendEmptyMessageDelayed(MSG_UPDATE_TIME, delayMs);
                         }
                     }
                 };
 
+        /*
+         * Handler that redraws exactly when a complication's time-dependent text changes, so
+         * cached complications are re-rendered at the granularity of their data rather than every
+         * frame.
+         */
+        private final Handler mComplicationChangeHandler =
+                new Handler() {
+                    @Override
+                    public void handleMessage(Message message) {
+                        requestComplicationRefresh();
+                        invalidate();
+                    }
+                };
+
         @Override
         public void onCreate(SurfaceHolder holder) {
             super.onCreate(holder);
@@ -201,7 +661,15 @@ public class ComplicationWatchFaceService extends CanvasWatchFaceService {
                             .setAcceptsTapEvents(true)
                             .build());
 
-            mCalendar = Calendar.getInstance();
+            mWallClock = new WallClock(TimeZone.getDefault());
+
+            mChoreographer = Choreographer.getInstance();
+
+            if (RENDER_ON_THREAD) {
+                mRenderThread = new HandlerThread(TAG + ".Render");
+                mRenderThread.start();
+                mRenderHandler = new Handler(mRenderThread.getLooper());
+            }
 
             initializeBackground();
 
@@ -209,11 +677,60 @@ public class ComplicationWatchFaceService extends CanvasWatchFaceService {
             initializeComplications();
 
             initializeHands();
+
+            initializeRenderPipeline();
+
+            setPowerStateSource(
+                    new BatterySaverPolicy.SystemPowerStateSource(
+                            ComplicationWatchFaceService.this));
+            setThermalStatusSource(
+                    new ThermalGovernor.BatteryTemperatureSource(
+                            ComplicationWatchFaceService.this));
+
+            loadRenderBackend();
         }
 
         private void initializeBackground() {
             mBackgroundPaint = new Paint();
             mBackgroundPaint.setColor(Color.BLACK);
+
+            ColorMatrix ambientMatrix = new ColorMatrix();
+            ambientMatrix.setSaturation(0);
+            ColorMatrix dimMatrix = new ColorMatrix();
+            dimMatrix.setScale(
+                    AMBIENT_BACKGROUND_IMAGE_BRIGHTNESS,
+                    AMBIENT_BACKGROUND_IMAGE_BRIGHTNESS,
+                    AMBIENT_BACKGROUND_IMAGE_BRIGHTNESS,
+                    1);
+            ambientMatrix.postConcat(dimMatrix);
+            mAmbientBackgroundImagePaint = new Paint();
+            mAmbientBackgroundImagePaint.setColorFilter(new ColorMatrixColorFilter(ambientMatrix));
+
+            mBackgroundImageLoader =
+                    new BackgroundImageLoader(getContentResolver(), mBackgroundImageCallback);
+            mBackgroundPreferences =
+                    getSharedPreferences(BACKGROUND_PREFERENCES_NAME, Context.MODE_PRIVATE);
+            mBackgroundPreferences.registerOnSharedPreferenceChangeListener(
+                    mBackgroundPreferenceListener);
+        }
+
+        /* Switches to the render backend chosen under HARDWARE_CANVAS_KEY. */
+        private void loadRenderBackend() {
+            setRenderBackend(
+                    mBackgroundPreferences.getBoolean(HARDWARE_CANVAS_KEY, false)
+                            ? RenderBackend.HARDWARE
+                            : RenderBackend.SOFTWARE);
+        }
+
+        /* Starts loading the chosen background photo for the current surface size. */
+        private void loadBackgroundImage() {
+            if (mSurfaceWidth == 0 || mSurfaceHeight == 0) {
+                // onSurfaceChanged() loads it once the size is known.
+                return;
+            }
+            String uri = mBackgroundPreferences.getString(BACKGROUND_IMAGE_URI_KEY, null);
+            mBackgroundImageLoader.load(
+                    uri == null ? null : Uri.parse(uri), mSurfaceWidth, mSurfaceHeight);
         }
 
         // TODO: Step 2, initializeComplications()
@@ -240,6 +757,32 @@ public class ComplicationWatchFaceService extends CanvasWatchFaceService {
             mComplicationDrawableSparseArray = new SparseArray<>(COMPLICATION_IDS.length);
             mComplicationDrawableSparseArray.put(LEFT_COMPLICATION_ID, leftComplicationDrawable);
             mComplicationDrawableSparseArray.put(RIGHT_COMPLICATION_ID, rightComplicationDrawable);
+            leftComplicationDrawable.setCallback(mComplicationDrawableCallback);
+            rightComplicationDrawable.setCallback(mComplicationDrawableCallback);
+
+            Context context = getApplicationContext();
+            LiteComplicationStyle activeStyle = LiteComplicationStyle.createActive(context);
+            LiteComplicationStyle ambientStyle = LiteComplicationStyle.createAmbient(context);
+            mComplicationAmbientBackgroundColor = ambientStyle.backgroundColor;
+
+            mLiteComplicationSparseArray = new SparseArray<>(COMPLICATION_IDS.length);
+            if (USE_LITE_COMPLICATION_RENDERERS) {
+                for (int i = 0; i < COMPLICATION_IDS.length; i++) {
+                    final int complicationId = COMPLICATION_IDS[i];
+                    LiteComplicationRenderer.Callback callback =
+                            new LiteComplicationRenderer.Callback() {
+                                @Override
+                                public void onImageLoaded() {
+                                    onComplicationInvalidated(complicationId);
+                                }
+                            };
+                    mLiteComplicationSparseArray.put(
+                            complicationId,
+                            new LiteComplication(context, activeStyle, ambientStyle, callback));
+                }
+            }
+
+            mComplicationNextChangeTimes = new SparseLongArray(COMPLICATION_IDS.length);
 
             setActiveComplications(COMPLICATION_IDS);
         }
@@ -258,16 +801,167 @@ public class ComplicationWatchFaceService extends CanvasWatchFaceService {
             mSecondHandPaint.setAntiAlias(true);
             mSecondHandPaint.setStrokeCap(Paint.Cap.ROUND);
             mSecondHandPaint.setShadowLayer(SHADOW_RADIUS, 0, 0, Color.BLACK);
+
+            mHandSpritePaint = new Paint();
+            mHandSpritePaint.setFilterBitmap(true);
+
+            mDialAlphaPaint = new Paint();
+
+            mBurnInOutlinePaint = new Paint();
+            mBurnInOutlinePaint.setColor(Color.WHITE);
+            mBurnInOutlinePaint.setStyle(Paint.Style.STROKE);
+            mBurnInOutlinePaint.setStrokeWidth(BURN_IN_OUTLINE_WIDTH);
+        }
+
+        /*
+         * Sets up the stages of a frame, bottom to top. Each one is only rendered again when its
+         * cadence or one of its inputs says so, and composited from its cache in other frames.
+         */
+        private void initializeRenderPipeline() {
+            mRenderPipeline.addStage(
+                    new RenderPipeline.Stage(
+                            "Dial",
+                            RenderPipeline.CADENCE_SURFACE,
+                            RenderPipeline.INPUT_MODE
+                                    | RenderPipeline.INPUT_STYLE
+                                    | (RECORD_STATIC_SCENE
+                                            ? RenderPipeline.INPUT_COMPLICATION_DATA
+                                            : 0)) {
+                        @Override
+                        void render(long currentTimeMillis) {
+                            // The dial bitmaps of both modes are kept by rebuildModeLayers().
+                            if (RECORD_STATIC_SCENE && mSurfaceWidth > 0) {
+                                recordStaticScene(currentTimeMillis);
+                            }
+                        }
+
+                        @Override
+                        void draw(Canvas canvas) {
+                            drawBackground(canvas);
+                        }
+                    });
+
+            mRenderPipeline.addStage(
+                    new RenderPipeline.Stage(
+                            "Complications",
+                            RenderPipeline.CADENCE_DATA_CHANGE,
+                            RenderPipeline.INPUT_MODE | RenderPipeline.INPUT_STYLE) {
+                        @Override
+                        void render(long currentTimeMillis) {
+                            renderComplications(currentTimeMillis);
+                        }
+
+                        @Override
+                        void draw(Canvas canvas) {
+                            drawComplications(canvas);
+                        }
+                    });
+
+            mRenderPipeline.addStage(
+                    new RenderPipeline.Stage(
+                            "Hour and minute hands",
+                            RenderPipeline.CADENCE_MINUTE,
+                            RenderPipeline.INPUT_TIME_ZONE) {
+                        private float mHoursRotation;
+                        private float mMinutesRotation;
+
+                        @Override
+                        void render(long currentTimeMillis) {
+                            mHoursRotation = mWallClock.getHoursRotation();
+                            mMinutesRotation = mWallClock.getMinutesRotation();
+                        }
+
+                        @Override
+                        void draw(Canvas canvas) {
+                            ModeLayers layers = currentLayers();
+                            layers.mHourHandSprite.draw(
+                                    canvas, mHoursRotation, mCenterX, mCenterY, mHandSpritePaint);
+                            layers.mMinuteHandSprite.draw(
+                                    canvas, mMinutesRotation, mCenterX, mCenterY, mHandSpritePaint);
+                        }
+                    });
+
+            mRenderPipeline.addStage(
+                    new RenderPipeline.Stage("Second hand", RenderPipeline.CADENCE_FRAME, 0) {
+                        private float mSecondsRotation;
+
+                        @Override
+                        void render(long currentTimeMillis) {
+                            mSecondsRotation = mWallClock.getSecondsRotation();
+                        }
+
+                        @Override
+                        void draw(Canvas canvas) {
+                            /*
+                             * Ensure the "seconds" hand is drawn only when we are in interactive
+                             * mode. Otherwise, we only update the watch face once a minute.
+                             */
+                            if (!mAmbient) {
+                                currentLayers()
+                                        .mSecondHandSprite
+                                        .draw(
+                                                canvas,
+                                                mSecondsRotation,
+                                                mCenterX,
+                                                mCenterY,
+                                                mHandSpritePaint);
+                            }
+                        }
+                    });
+
+            mRenderPipeline.addStage(
+                    new RenderPipeline.Stage("Center dot", RenderPipeline.CADENCE_SURFACE, 0) {
+                        @Override
+                        void render(long currentTimeMillis) {
+                            // The sprite is all there is to it.
+                        }
+
+                        @Override
+                        void draw(Canvas canvas) {
+                            currentLayers()
+                                    .mCenterDotSprite
+                                    .draw(canvas, 0, mCenterX, mCenterY, mHandSpritePaint);
+                        }
+                    });
         }
 
         @Override
-        public void onDestroy() {
+        public synchronized void onDestroy() {
+            mChoreographer.removeFrameCallback(mFrameCallback);
             mUpdateTimeHandler.removeMessages(MSG_UPDATE_TIME);
+            mComplicationChangeHandler.removeMessages(MSG_COMPLICATION_CHANGE);
+            mPowerStateSource.setListener(null);
+            mThermalStatusSource.setListener(null);
+            mInteractiveLayers.release();
+            mAmbientLayers.release();
+            mBitmapPool.release(mFrameBitmap);
+            mFrameBitmap = null;
+            mBitmapPool.release(mAmbientFrameBitmap);
+            mAmbientFrameBitmap = null;
+            mBackgroundPreferences.unregisterOnSharedPreferenceChangeListener(
+                    mBackgroundPreferenceListener);
+            mBackgroundImageLoader.release();
+            if (mBackgroundImage != null) {
+                mBackgroundImage.recycle();
+                mBackgroundImage = null;
+            }
+            for (int i = 0; i < mLiteComplicationSparseArray.size(); i++) {
+                Log.d(
+                        TAG,
+                        "Complication " + mLiteComplicationSparseArray.keyAt(i) + ": "
+                                + mLiteComplicationSparseArray.valueAt(i).getTextLayoutCache());
+                mLiteComplicationSparseArray.valueAt(i).release();
+            }
+            Log.d(TAG, "onDestroy() " + mRenderPipeline);
+            mDestroyed = true;
+            if (mRenderThread != null) {
+                mRenderThread.quit();
+            }
             super.onDestroy();
         }
 
         @Override
-        public void onPropertiesChanged(Bundle properties) {
+        public synchronized void onPropertiesChanged(Bundle properties) {
             mLowBitAmbient = properties.getBoolean(PROPERTY_LOW_BIT_AMBIENT, false);
             mBurnInProtection = properties.getBoolean(PROPERTY_BURN_IN_PROTECTION, false);
 
@@ -283,6 +977,15 @@ public class ComplicationWatchFaceService extends CanvasWatchFaceService {
                     complicationDrawable.setBurnInProtection(mBurnInProtection);
                 }
             }
+
+            LiteComplication liteComplication;
+            for (int i = 0; i < mLiteComplicationSparseArray.size(); i++) {
+                liteComplication = mLiteComplicationSparseArray.valueAt(i);
+                liteComplication.setLowBitAmbient(mLowBitAmbient);
+                liteComplication.setBurnInProtection(mBurnInProtection);
+            }
+
+            rebuildModeLayers();
         }
 
         // TODO: Step 2, onComplicationDataUpdate()
@@ -294,14 +997,121 @@ public class ComplicationWatchFaceService extends CanvasWatchFaceService {
             // Adds/updates active complication data in the array.
             mActiveComplicationDataSparseArray.put(complicationId, complicationData);
 
+            if (mRenderHandler != null) {
+                // Applied on the render thread with the next frame.
+                synchronized (mSnapshotLock) {
+                    mPendingSnapshot.putComplicationData(complicationId, complicationData);
+                }
+            } else {
+                synchronized (this) {
+                    applyComplicationData(complicationId, complicationData);
+                }
+            }
+
+            invalidate();
+        }
+
+        /* Hands new data to the slot's renderers and marks its cached layers stale. */
+        private void applyComplicationData(int complicationId, ComplicationData complicationData) {
             // Updates correct ComplicationDrawable with updated data.
             ComplicationDrawable complicationDrawable =
                     mComplicationDrawableSparseArray.get(complicationId);
-            complicationDrawable.setComplicationData(complicationData);
+            mAppliedComplicationData.put(complicationId, complicationData);
+            LiteComplication liteComplication = mLiteComplicationSparseArray.get(complicationId);
+            if (liteComplication != null) {
+                liteComplication.setComplicationData(complicationData);
+            }
+            applyDrawableComplicationData(complicationId);
+            mInteractiveLayers.mComplicationLayers.get(complicationId).onDataChanged();
+            mAmbientLayers.mComplicationLayers.get(complicationId).onDataChanged();
+            mRenderPipeline.invalidate(RenderPipeline.INPUT_COMPLICATION_DATA);
+
+            mComplicationNextChangeTimes.put(
+                    complicationId,
+                    ComplicationChangeTimes.getNextChangeTime(
+                            getApplicationContext(),
+                            complicationData,
+                            System.currentTimeMillis()));
+            onComplicationChangeTimesChanged();
+
+            // Only this complication's area needs repainting on the next frame.
+            mDirtyRect.union(complicationDrawable.getBounds());
+            discardAmbientAheadFrame();
+        }
+
+        /*
+         * Hands the slot's applied data to its ComplicationDrawable only if the lite renderers
+         * leave the slot to it. Otherwise the drawable is cleared, so it doesn't load icons and
+         * images that nobody draws and then invalidate the slot once they arrive.
+         */
+        private void applyDrawableComplicationData(int complicationId) {
+            LiteComplication liteComplication = mLiteComplicationSparseArray.get(complicationId);
+            boolean drawn = liteComplication == null || liteComplication.usesFallback();
+            mDrawableComplicationIds.put(complicationId, drawn);
+            mComplicationDrawableSparseArray
+                    .get(complicationId)
+                    .setComplicationData(
+                            drawn
+                                    ? getDrawableComplicationData(
+                                            mAppliedComplicationData.get(complicationId))
+                                    : null);
+        }
+
+        /*
+         * Returns the data to give a slot's ComplicationDrawable. In the saver tier a small image
+         * is swapped for its content description as short text, like the lite renderers do, so
+         * slots drawn by the fallback don't draw images either.
+         */
+        private ComplicationData getDrawableComplicationData(ComplicationData complicationData) {
+            if (mPowerTier < BatterySaverPolicy.TIER_SAVER
+                    || complicationData == null
+                    || complicationData.getType() != ComplicationData.TYPE_SMALL_IMAGE
+                    || complicationData.getContentDescription() == null) {
+                return complicationData;
+            }
+            return new ComplicationData.Builder(ComplicationData.TYPE_SHORT_TEXT)
+                    .setShortText(complicationData.getContentDescription())
+                    .setTapAction(complicationData.getTapAction())
+                    .build();
+        }
+
+        /*
+         * Has the slot's renders redrawn after its renderer changed without new data. Called on
+         * the main thread, or on the render thread when an image loaded there.
+         */
+        private void onComplicationInvalidated(int complicationId) {
+            if (mRenderHandler != null) {
+                // Applied on the render thread with the next frame, which is requested directly
+                // as the frame callback is only posted from the main thread.
+                synchronized (mSnapshotLock) {
+                    mPendingSnapshot.invalidateComplication(complicationId);
+                }
+                postRenderFrame();
+                return;
+            }
 
+            synchronized (this) {
+                invalidateComplicationLayers(complicationId);
+            }
             invalidate();
         }
 
+        /* Marks the slot's cached renders in both modes stale and its area dirty. */
+        private void invalidateComplicationLayers(int complicationId) {
+            LiteComplication liteComplication = mLiteComplicationSparseArray.get(complicationId);
+            if (liteComplication != null
+                    && liteComplication.usesFallback()
+                            != mDrawableComplicationIds.get(complicationId)) {
+                // An icon or image failed to load, so the drawable takes over the slot.
+                applyDrawableComplicationData(complicationId);
+            }
+            mInteractiveLayers.mComplicationLayers.get(complicationId).invalidate();
+            mAmbientLayers.mComplicationLayers.get(complicationId).invalidate();
+            mRenderPipeline.invalidate(RenderPipeline.INPUT_COMPLICATION_DATA);
+            mDirtyRect.union(mComplicationDrawableSparseArray.get(complicationId).getBounds());
+            discardAmbientAheadFrame();
+        }
+
         @Override
         public void onTapCommand(int tapType, int x, int y, long eventTime) {
             // TODO: Step 5, OnTapCommand()
@@ -391,52 +1201,268 @@ public class ComplicationWatchFaceService extends CanvasWatchFaceService {
         @Override
         public void onTimeTick() {
             super.onTimeTick();
+            // No change timer runs in ambient mode, so catch up on any text changes here.
+            requestComplicationRefresh();
             invalidate();
         }
 
-        @Override
-        public void onAmbientModeChanged(boolean inAmbientMode) {
-            super.onAmbientModeChanged(inAmbientMode);
-
-            mAmbient = inAmbientMode;
+        /*
+         * Has the complications whose text changed by now re-rendered for the next frame. With a
+         * render thread that happens there, so the main thread doesn't wait for the monitor.
+         */
+        private void requestComplicationRefresh() {
+            if (mRenderHandler != null) {
+                synchronized (mSnapshotLock) {
+                    mPendingSnapshot.setComplicationRefreshDue();
+                }
+            } else {
+                refreshChangedComplications(System.currentTimeMillis());
+            }
+        }
 
-            updateWatchHandStyles();
+        /*
+         * Re-renders every complication whose time-dependent text has changed by currentTimeMillis,
+         * works out when it changes next and reschedules the change timer.
+         */
+        private synchronized void refreshChangedComplications(long currentTimeMillis) {
+            if (ThermalGovernor.freezesComplicationLayers(mThermalStatus)) {
+                // Caught up on by updateThermalStatus() once the device cools down.
+                return;
+            }
 
-            // TODO: Step 2, ambient
-            // Update drawable complications' ambient state.
-            // Note: ComplicationDrawable handles switching between active/ambient colors, we just
-            // have to inform it to enter ambient mode.
-            ComplicationDrawable complicationDrawable;
+            int complicationId;
+            long nextChangeTime;
 
             for (int i = 0; i < COMPLICATION_IDS.length; i++) {
-                complicationDrawable = mComplicationDrawableSparseArray.get(COMPLICATION_IDS[i]);
-                complicationDrawable.setInAmbientMode(mAmbient);
-            }
+                complicationId = COMPLICATION_IDS[i];
+                nextChangeTime =
+                        mComplicationNextChangeTimes.get(
+                                complicationId, ComplicationChangeTimes.NEVER);
+
+                if (nextChangeTime <= currentTimeMillis) {
+                    if (mAmbientAheadTimeMillis >= 0
+                            && currentTimeMillis >= mAmbientAheadTimeMillis
+                            && mAmbientAheadComplicationIds.get(complicationId)) {
+                        // The ambient frame rendered ahead for this minute already shows the
+                        // new text, so only the interactive render is stale.
+                        mAmbientAheadComplicationIds.delete(complicationId);
+                        mInteractiveLayers.mComplicationLayers.get(complicationId).invalidate();
+                        mRenderPipeline.invalidate(RenderPipeline.INPUT_COMPLICATION_DATA);
+                    } else {
+                        invalidateComplicationLayers(complicationId);
+                    }
+
+                    mComplicationNextChangeTimes.put(
+                            complicationId,
+                            ComplicationChangeTimes.getNextChangeTime(
+                                    getApplicationContext(),
+                                    mAppliedComplicationData.get(complicationId),
+                                    currentTimeMillis));
+                }
+            }
+
+            onComplicationChangeTimesChanged();
+        }
+
+        /*
+         * Moves the wall clock to the default time zone. Complication text such as a time of day
+         * or a countdown is formatted in that zone too, so every slot is re-rendered and its next
+         * change time worked out again.
+         */
+        private void onTimeZoneChanged() {
+            mWallClock.setTimeZone(TimeZone.getDefault());
+            mRenderPipeline.invalidate(RenderPipeline.INPUT_TIME_ZONE);
+
+            long currentTimeMillis = System.currentTimeMillis();
+            int complicationId;
+            for (int i = 0; i < COMPLICATION_IDS.length; i++) {
+                complicationId = COMPLICATION_IDS[i];
+                invalidateComplicationLayers(complicationId);
+                mComplicationNextChangeTimes.put(
+                        complicationId,
+                        ComplicationChangeTimes.getNextChangeTime(
+                                getApplicationContext(),
+                                mAppliedComplicationData.get(complicationId),
+                                currentTimeMillis));
+            }
+            onComplicationChangeTimesChanged();
+
+            mFullRedrawPending = true;
+            discardAmbientAheadFrame();
+        }
+
+        /* Publishes the earliest of mComplicationNextChangeTimes and reschedules the timer. */
+        private void onComplicationChangeTimesChanged() {
+            long earliestChangeTime = ComplicationChangeTimes.NEVER;
+            for (int i = 0; i < mComplicationNextChangeTimes.size(); i++) {
+                earliestChangeTime =
+                        Math.min(earliestChangeTime, mComplicationNextChangeTimes.valueAt(i));
+            }
+            mEarliestComplicationChangeTime = earliestChangeTime;
+            scheduleNextComplicationChange();
+        }
+
+        /*
+         * Schedules {@link #mComplicationChangeHandler} for the earliest upcoming text change. Like
+         * the second hand timer, it only runs while visible and interactive. Needs no monitor, so
+         * the main thread can call it while the render thread draws.
+         */
+        private void scheduleNextComplicationChange() {
+            mComplicationChangeHandler.removeMessages(MSG_COMPLICATION_CHANGE);
+            if (!shouldTimerBeRunning()
+                    || ThermalGovernor.freezesComplicationLayers(mThermalStatus)) {
+                return;
+            }
+
+            long earliestChangeTime = mEarliestComplicationChangeTime;
+            if (earliestChangeTime != ComplicationChangeTimes.NEVER) {
+                long now = System.currentTimeMillis();
+                long delayMs = Math.max(0, earliestChangeTime - now);
+                if (ThermalGovernor.defersComplicationWork(mThermalStatus)) {
+                    // Coalesce changes to at most one re-render per minute.
+                    long minuteMillis = TimeUnit.MINUTES.toMillis(1);
+                    delayMs = Math.max(delayMs, minuteMillis - now % minuteMillis);
+                }
+                mComplicationChangeHandler.sendEmptyMessageDelayed(
+                        MSG_COMPLICATION_CHANGE, delayMs);
+            }
+        }
+
+        @Override
+        public synchronized void onAmbientModeChanged(boolean inAmbientMode) {
+            super.onAmbientModeChanged(inAmbientMode);
+
+            mAmbient = inAmbientMode;
+
+            // CPU measurements from before ambient mode no longer reflect what the user sees.
+            mFrameRatePolicy.resetWindow();
+
+            if (!mAmbient) {
+                mWristRaiseUptimeMillis = SystemClock.uptimeMillis();
+            }
+
+            // Both modes' layers are already rendered; only the paints used to composite them
+            // and which set is drawn change.
+            applyHandStyles(mAmbient);
+            mRenderPipeline.invalidate(RenderPipeline.INPUT_MODE);
+            mFullRedrawPending = true;
+            discardAmbientAheadFrame();
+
+            // Each mode uses one of the two full-screen frames. The idle one goes back to the
+            // pool, which hands the same memory to the other mode's frame.
+            if (mAmbient) {
+                mBitmapPool.release(mFrameBitmap);
+                mFrameBitmap = null;
+            } else {
+                mBitmapPool.release(mAmbientFrameBitmap);
+                mAmbientFrameBitmap = null;
+                acquireFrameBitmap();
+            }
+
+            // TODO: Step 2, ambient
+            // Update drawable complications' ambient state.
+            // Note: ComplicationDrawable handles switching between active/ambient colors, we just
+            // have to inform it to enter ambient mode.
+            ComplicationDrawable complicationDrawable;
+
+            for (int i = 0; i < COMPLICATION_IDS.length; i++) {
+                complicationDrawable = mComplicationDrawableSparseArray.get(COMPLICATION_IDS[i]);
+                complicationDrawable.setInAmbientMode(mAmbient);
+            }
+            for (int i = 0; i < mLiteComplicationSparseArray.size(); i++) {
+                mLiteComplicationSparseArray.valueAt(i).setInAmbientMode(mAmbient);
+            }
 
             // Check and trigger whether or not timer should be running (only in active mode).
             updateTimer();
         }
 
-        private void updateWatchHandStyles() {
+        /*
+         * Configures the hand and tick paints, and the paint the hand sprites are composited with,
+         * for the given mode.
+         */
+        private void applyHandStyles(boolean ambient) {
 
-            if (mAmbient) {
+            if (ambient) {
                 mHourMinuteTicksHandPaint.setAntiAlias(false);
                 mHourMinuteTicksHandPaint.clearShadowLayer();
+                mHourMinuteTicksHandPaint.setStrokeWidth(
+                        mAmbientPixelPolicy.getLevel() >= AmbientPixelPolicy.LEVEL_THIN_STROKES
+                                ? AMBIENT_THIN_STROKE_WIDTH
+                                : HOUR_AND_MINUTE_STROKE_WIDTH);
 
                 mSecondHandPaint.setAntiAlias(false);
                 mSecondHandPaint.clearShadowLayer();
             } else {
+                // Lower battery saver tiers give up the shadows, then anti-aliasing.
+                boolean antiAlias = mPowerTier < BatterySaverPolicy.TIER_SAVER;
+                boolean shadows = mPowerTier == BatterySaverPolicy.TIER_FULL;
+
+                mHourMinuteTicksHandPaint.setAntiAlias(antiAlias);
+                mHourMinuteTicksHandPaint.setStrokeWidth(HOUR_AND_MINUTE_STROKE_WIDTH);
+
+                mSecondHandPaint.setAntiAlias(antiAlias);
+
+                if (shadows) {
+                    mHourMinuteTicksHandPaint.setShadowLayer(SHADOW_RADIUS, 0, 0, Color.BLACK);
+                    mSecondHandPaint.setShadowLayer(SHADOW_RADIUS, 0, 0, Color.BLACK);
+                } else {
+                    mHourMinuteTicksHandPaint.clearShadowLayer();
+                    mSecondHandPaint.clearShadowLayer();
+                }
+            }
+
+            // Keep rotated ambient hands as crisp as the unfiltered strokes they replace.
+            mHandSpritePaint.setFilterBitmap(
+                    !ambient && mPowerTier < BatterySaverPolicy.TIER_SAVER);
 
-                mHourMinuteTicksHandPaint.setAntiAlias(true);
-                mHourMinuteTicksHandPaint.setShadowLayer(SHADOW_RADIUS, 0, 0, Color.BLACK);
+            // ALPHA_8 sprites are drawn in the paint's color.
+            mHandSpritePaint.setColor(mHourMinuteTicksHandPaint.getColor());
+        }
 
-                mSecondHandPaint.setAntiAlias(true);
-                mSecondHandPaint.setShadowLayer(SHADOW_RADIUS, 0, 0, Color.BLACK);
+        /*
+         * Re-renders the hand sprites of {@code layers} from the current hand lengths and the
+         * paints as set up by applyHandStyles() for its mode.
+         */
+        private void renderHandSprites(ModeLayers layers) {
+            // Ambient hands are single-colored without shadows, so their sprites only need
+            // coverage.
+            Bitmap.Config spriteConfig =
+                    layers.mIsAmbient ? Bitmap.Config.ALPHA_8 : Bitmap.Config.ARGB_8888;
+            Paint outlinePaint = isBurnInOutlined(layers.mIsAmbient) ? mBurnInOutlinePaint : null;
+            HandSprite[] sprites = {
+                layers.mHourHandSprite,
+                layers.mMinuteHandSprite,
+                layers.mSecondHandSprite,
+                layers.mCenterDotSprite
+            };
+            for (HandSprite sprite : sprites) {
+                sprite.setConfig(spriteConfig);
+                sprite.setOutlinePaint(outlinePaint);
             }
+
+            layers.mHourHandSprite.renderHand(
+                    CENTER_GAP_AND_CIRCLE_RADIUS,
+                    mHourHandLength,
+                    SHADOW_RADIUS,
+                    mHourMinuteTicksHandPaint);
+            layers.mMinuteHandSprite.renderHand(
+                    CENTER_GAP_AND_CIRCLE_RADIUS,
+                    mMinuteHandLength,
+                    SHADOW_RADIUS,
+                    mHourMinuteTicksHandPaint);
+            layers.mSecondHandSprite.renderHand(
+                    CENTER_GAP_AND_CIRCLE_RADIUS,
+                    mSecondHandLength,
+                    SHADOW_RADIUS,
+                    mSecondHandPaint);
+            layers.mCenterDotSprite.renderDot(
+                    CENTER_GAP_AND_CIRCLE_RADIUS, SHADOW_RADIUS, mHourMinuteTicksHandPaint);
         }
 
         @Override
-        public void onSurfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+        public synchronized void onSurfaceChanged(
+                SurfaceHolder holder, int format, int width, int height) {
             super.onSurfaceChanged(holder, format, width, height);
 
             /*
@@ -445,6 +1471,10 @@ public class ComplicationWatchFaceService extends CanvasWatchFaceService {
              * with a "chin", the watch face is centered on the entire screen,
              * not just the usable portion.
              */
+            boolean sizeChanged = width != mSurfaceWidth || height != mSurfaceHeight;
+            mSurfaceWidth = width;
+            mSurfaceHeight = height;
+
             mCenterX = width / 2f;
             mCenterY = height / 2f;
 
@@ -455,6 +1485,9 @@ public class ComplicationWatchFaceService extends CanvasWatchFaceService {
             mMinuteHandLength = (float) (mCenterX * 0.75);
             mHourHandLength = (float) (mCenterX * 0.5);
 
+            computeTickPoints(
+                    mTickPoints, TICK_COUNT, mCenterX, mCenterY, mCenterX - TICK_LENGTH, mCenterX);
+
             /*
              * Calculates location bounds for right and left circular complications. Please note,
              * we are not demonstrating a long text complication in this watch face.
@@ -483,6 +1516,7 @@ public class ComplicationWatchFaceService extends CanvasWatchFaceService {
             ComplicationDrawable leftComplicationDrawable =
                     mComplicationDrawableSparseArray.get(LEFT_COMPLICATION_ID);
             leftComplicationDrawable.setBounds(leftBounds);
+            setLiteComplicationBounds(LEFT_COMPLICATION_ID, leftBounds);
 
             Rect rightBounds =
                     // Left, Top, Right, Bottom
@@ -495,125 +1529,891 @@ public class ComplicationWatchFaceService extends CanvasWatchFaceService {
             ComplicationDrawable rightComplicationDrawable =
                     mComplicationDrawableSparseArray.get(RIGHT_COMPLICATION_ID);
             rightComplicationDrawable.setBounds(rightBounds);
+            setLiteComplicationBounds(RIGHT_COMPLICATION_ID, rightBounds);
+
+            mBitmapPool.release(mFrameBitmap);
+            mFrameBitmap = null;
+            if (!mAmbient) {
+                acquireFrameBitmap();
+            }
+
+            rebuildModeLayers();
+
+            if (sizeChanged) {
+                // The photo is decoded at the surface size; the layers are rebuilt again once it
+                // arrives.
+                loadBackgroundImage();
+            }
+        }
+
+        /**
+         * Sets where the battery state is read from, e.g. a fake source to try each battery saver
+         * tier. Stops the previous source.
+         */
+        void setPowerStateSource(BatterySaverPolicy.PowerStateSource powerStateSource) {
+            if (mPowerStateSource != null) {
+                mPowerStateSource.setListener(null);
+            }
+            mPowerStateSource = powerStateSource;
+            mPowerStateSource.setListener(mPowerStateListener);
+            updatePowerTier();
+        }
+
+        /*
+         * Applies the battery saver tier for the current power state: hand styles, small images
+         * and the interactive frame rate cap.
+         */
+        private synchronized void updatePowerTier() {
+            int tier = BatterySaverPolicy.getTier(mPowerStateSource);
+            if (tier == mPowerTier) {
+                return;
+            }
+            Log.d(TAG, "Battery saver tier: " + tier);
+            mPowerTier = tier;
+
+            boolean imagesHidden = tier >= BatterySaverPolicy.TIER_SAVER;
+            for (int i = 0; i < mLiteComplicationSparseArray.size(); i++) {
+                mLiteComplicationSparseArray.valueAt(i).setImagesHidden(imagesHidden);
+            }
+            for (int i = 0; i < mAppliedComplicationData.size(); i++) {
+                applyDrawableComplicationData(mAppliedComplicationData.keyAt(i));
+            }
+            for (int i = 0; i < COMPLICATION_IDS.length; i++) {
+                mInteractiveLayers.mComplicationLayers.get(COMPLICATION_IDS[i]).invalidate();
+                mAmbientLayers.mComplicationLayers.get(COMPLICATION_IDS[i]).invalidate();
+            }
+
+            updateFrameRateCap();
+
+            // The hand sprites are rendered with the tier's anti-aliasing and shadows.
+            rebuildModeLayers();
+            updateTimer();
+            invalidate();
         }
 
+        /**
+         * Sets where the thermal status is read from, e.g. a fake source to try each status.
+         * Stops the previous source.
+         */
+        void setThermalStatusSource(ThermalGovernor.ThermalStatusSource thermalStatusSource) {
+            if (mThermalStatusSource != null) {
+                mThermalStatusSource.setListener(null);
+            }
+            mThermalStatusSource = thermalStatusSource;
+            mThermalStatusSource.setListener(mThermalStatusListener);
+            updateThermalStatus();
+        }
+
+        /* Applies the frame rate cap and complication work limits for the thermal status. */
+        private synchronized void updateThermalStatus() {
+            int status = mThermalStatusSource.getThermalStatus();
+            if (status == mThermalStatus) {
+                return;
+            }
+            Log.d(TAG, "Thermal status: " + status);
+            boolean wasFrozen = ThermalGovernor.freezesComplicationLayers(mThermalStatus);
+            mThermalStatus = status;
+
+            updateFrameRateCap();
+            if (wasFrozen && !ThermalGovernor.freezesComplicationLayers(status)) {
+                // Re-renders the text changes skipped while frozen, and the complications stage
+                // picks up data that arrived meanwhile by the layers' data versions.
+                mRenderPipeline.invalidate(RenderPipeline.INPUT_COMPLICATION_DATA);
+                refreshChangedComplications(System.currentTimeMillis());
+            }
+            updateTimer();
+            invalidate();
+        }
+
+        /* Caps the interactive frame rate at the lower of the battery and thermal caps. */
+        private void updateFrameRateCap() {
+            mFrameRatePolicy.setMaxFramesPerSecond(
+                    Math.min(
+                            BatterySaverPolicy.getMaxFramesPerSecond(mPowerTier),
+                            ThermalGovernor.getMaxFramesPerSecond(mThermalStatus)));
+        }
+
+        private void setLiteComplicationBounds(int complicationId, Rect bounds) {
+            LiteComplication liteComplication = mLiteComplicationSparseArray.get(complicationId);
+            if (liteComplication != null) {
+                liteComplication.setBounds(bounds);
+            }
+        }
+
+        /*
+         * Re-renders the dial and hand layers of both modes. Only called when something they
+         * depend on changes: surface size, screen properties or the background photo. The
+         * ambient content starts over in full, to be measured against the lit pixel budget again.
+         */
+        private void rebuildModeLayers() {
+            discardAmbientAheadFrame();
+            if (mAmbientPixelPolicy.getLevel() != AmbientPixelPolicy.LEVEL_FULL) {
+                mAmbientPixelPolicy.reset();
+                applyAmbientComplicationLevel();
+            }
+
+            if (mSurfaceWidth == 0 || mSurfaceHeight == 0) {
+                // onPropertiesChanged() can arrive before the surface has a size.
+                return;
+            }
+
+            mRenderPipeline.invalidate(RenderPipeline.INPUT_SURFACE);
+            mFullRedrawPending = true;
+
+            renderModeLayers(mInteractiveLayers);
+            renderModeLayers(mAmbientLayers);
+
+            // Leave the paints set up for compositing the current mode.
+            applyHandStyles(mAmbient);
+        }
+
+        private void renderModeLayers(ModeLayers layers) {
+            boolean ambient = layers.mIsAmbient;
+            applyHandStyles(ambient);
+            renderHandSprites(layers);
+
+            if (isBurnInOutlined(ambient)) {
+                mTickPath.reset();
+                for (int i = 0; i < mTickPoints.length; i += 4) {
+                    mTickPath.moveTo(mTickPoints[i], mTickPoints[i + 1]);
+                    mTickPath.lineTo(mTickPoints[i + 2], mTickPoints[i + 3]);
+                }
+                HandSprite.getStrokeOutline(
+                        mHourMinuteTicksHandPaint, mTickStrokePaint, mTickPath, mTickOutlinePath);
+            }
+
+            if (RECORD_STATIC_SCENE) {
+                // The dial is part of the recorded scene instead.
+                return;
+            }
+
+            /*
+             * The dial is opaque, so it is kept as RGB_565 at half the memory of ARGB_8888. In
+             * ambient mode without a background photo it is monochrome: only the tick coverage is
+             * kept, as ALPHA_8, and blitted in the tick color with mDialAlphaPaint over the plain
+             * background color.
+             */
+            Bitmap.Config config =
+                    ambient && !isBackgroundImageShown(ambient)
+                            ? Bitmap.Config.ALPHA_8
+                            : Bitmap.Config.RGB_565;
+            if (layers.mDialBitmap == null
+                    || layers.mDialBitmap.getWidth() != mSurfaceWidth
+                    || layers.mDialBitmap.getHeight() != mSurfaceHeight
+                    || layers.mDialBitmap.getConfig() != config) {
+                mBitmapPool.release(layers.mDialBitmap);
+                layers.mDialBitmap = mBitmapPool.acquire(mSurfaceWidth, mSurfaceHeight, config);
+                layers.mDialCanvas = new Canvas(layers.mDialBitmap);
+            }
+
+            if (config == Bitmap.Config.ALPHA_8) {
+                layers.mDialBitmap.eraseColor(Color.TRANSPARENT);
+                mDialAlphaPaint.setColor(mHourMinuteTicksHandPaint.getColor());
+            } else {
+                renderBackground(layers.mDialCanvas, ambient);
+            }
+            renderTicks(layers.mDialCanvas, ambient);
+        }
+
+        /*
+         * Records the background, ticks and complications into {@link #mStaticScenePicture}.
+         * Recording only captures drawing commands, so this is cheap next to rendering bitmaps.
+         */
+        private void recordStaticScene(long currentTimeMillis) {
+            if (mStaticScenePicture == null) {
+                mStaticScenePicture = new Picture();
+            }
+
+            Canvas canvas = mStaticScenePicture.beginRecording(mSurfaceWidth, mSurfaceHeight);
+            renderBackground(canvas, mAmbient);
+            renderTicks(canvas, mAmbient);
+            int complicationId;
+            LiteComplication liteComplication;
+            for (int i = 0; i < COMPLICATION_IDS.length; i++) {
+                complicationId = COMPLICATION_IDS[i];
+                liteComplication = mLiteComplicationSparseArray.get(complicationId);
+                if (liteComplication == null || !liteComplication.draw(canvas, currentTimeMillis)) {
+                    mComplicationDrawableSparseArray
+                            .get(complicationId)
+                            .draw(canvas, currentTimeMillis);
+                }
+            }
+            mStaticScenePicture.endRecording();
+        }
+
+        /*
+         * Requests a frame on the next vsync. Replaces CanvasWatchFaceService's own scheduling so
+         * that the frame is drawn through the current {@link RenderBackend}.
+         */
         @Override
-        public void onDraw(Canvas canvas, Rect bounds) {
-            long now = System.currentTimeMillis();
-            mCalendar.setTimeInMillis(now);
+        public void invalidate() {
+            if (!mDrawRequested) {
+                mDrawRequested = true;
+                mChoreographer.postFrameCallback(mFrameCallback);
+            }
+        }
+
+        @Override
+        public void onSurfaceRedrawNeeded(SurfaceHolder holder) {
+            // The superclass would redraw through a software-locked canvas; draw through the
+            // current backend instead. WallpaperService's implementation is empty.
+            mChoreographer.removeFrameCallback(mFrameCallback);
+            mDrawRequested = false;
+            if (mRenderHandler != null) {
+                // The surface is shown once this returns, so wait until the render thread has
+                // drawn it.
+                awaitRenderFrame(postRenderFrame());
+            } else {
+                drawNow(System.currentTimeMillis());
+            }
+        }
+
+        /*
+         * Blocks until the render thread has drawn the snapshot numbered {@code snapshot}, or
+         * REDRAW_TIMEOUT_MS have passed.
+         */
+        private void awaitRenderFrame(long snapshot) {
+            long deadline = SystemClock.uptimeMillis() + REDRAW_TIMEOUT_MS;
+            synchronized (mSnapshotLock) {
+                while (mSnapshotsDrawn < snapshot) {
+                    long remainingMs = deadline - SystemClock.uptimeMillis();
+                    if (remainingMs <= 0) {
+                        Log.w(TAG, "Surface redraw timed out waiting for the render thread.");
+                        return;
+                    }
+                    try {
+                        mSnapshotLock.wait(remainingMs);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }
 
-            drawBackground(canvas);
+        @Override
+        public void onSurfaceCreated(SurfaceHolder holder) {
+            super.onSurfaceCreated(holder);
+            synchronized (this) {
+                mSurfaceValid = true;
+            }
+        }
 
-            drawComplications(canvas, now);
+        @Override
+        public void onSurfaceDestroyed(SurfaceHolder holder) {
+            // Waits for a frame in progress on the render thread; later ones skip drawing.
+            synchronized (this) {
+                mSurfaceValid = false;
+            }
+            super.onSurfaceDestroyed(holder);
+        }
 
-            drawHands(canvas);
+        /*
+         * Asks the render thread for a frame at the current time. Requests made before it gets
+         * to the frame are merged into that one. Returns the number of the snapshot the frame is
+         * drawn from, for awaitRenderFrame().
+         */
+        private long postRenderFrame() {
+            synchronized (mSnapshotLock) {
+                mPendingSnapshot.setTimeMillis(System.currentTimeMillis());
+                if (!mRenderFramePosted) {
+                    mRenderFramePosted = true;
+                    mRenderHandler.post(mRenderFrameRunnable);
+                }
+                return mSnapshotsTaken + 1;
+            }
         }
 
-        private void drawComplications(Canvas canvas, long currentTimeMillis) {
-            // TODO: Step 4, drawComplications()
+        /*
+         * Takes the inputs collected for the next frame by swapping the two snapshots, so the
+         * main thread collects into the one drawn last. Called on the render thread.
+         */
+        private FrameSnapshot takeFrameSnapshot() {
+            synchronized (mSnapshotLock) {
+                FrameSnapshot snapshot = mPendingSnapshot;
+                mPendingSnapshot = mRenderSnapshot;
+                mPendingSnapshot.clear();
+                mRenderSnapshot = snapshot;
+                mRenderFramePosted = false;
+                mSnapshotsTaken++;
+                return snapshot;
+            }
+        }
+
+        /* Applies the snapshot's complication changes and draws its frame. On the render thread. */
+        private synchronized void renderFrameSnapshot(FrameSnapshot snapshot) {
+            if (mDestroyed) {
+                // Taken off the queue just before onDestroy() released everything.
+                return;
+            }
+            for (int i = 0; i < snapshot.getComplicationDataCount(); i++) {
+                applyComplicationData(
+                        snapshot.getComplicationId(i), snapshot.getComplicationData(i));
+            }
+            for (int i = 0; i < snapshot.getInvalidatedComplicationCount(); i++) {
+                invalidateComplicationLayers(snapshot.getInvalidatedComplicationId(i));
+            }
+            if (snapshot.isComplicationRefreshDue()) {
+                refreshChangedComplications(snapshot.getTimeMillis());
+            }
+            drawNow(snapshot.getTimeMillis());
+        }
+
+        /**
+         * Switches the backend that frames are drawn with. Takes effect on the next frame.
+         */
+        synchronized void setRenderBackend(RenderBackend renderBackend) {
+            if (mRenderBackend == renderBackend) {
+                return;
+            }
+            mRenderBackend = renderBackend;
+            mRenderBackendCheckPending = renderBackend.isHardwareAccelerated();
+            mFullRedrawPending = true;
+            invalidate();
+        }
+
+        /*
+         * Records the frame for currentTimeMillis and plays it back through both backends. Falls
+         * back to the software backend if the hardware render doesn't match.
+         */
+        private void checkRenderBackend(long currentTimeMillis) {
+            mRenderBackendCheckPending = false;
+            Picture frame = new Picture();
+            drawFrame(frame.beginRecording(mSurfaceWidth, mSurfaceHeight), currentTimeMillis);
+            frame.endRecording();
+            if (!RenderBackend.hardwareMatchesSoftware(frame)) {
+                Log.w(TAG, "Hardware canvas output differs from software, staying on software.");
+                mRenderBackend = RenderBackend.SOFTWARE;
+            }
+        }
+
+        /* Draws and posts a frame for {@code currentTimeMillis}, on whichever thread draws. */
+        private synchronized void drawNow(long currentTimeMillis) {
+            if (!mSurfaceValid) {
+                return;
+            }
+            SurfaceHolder holder = getSurfaceHolder();
+            if (mRenderBackendCheckPending && mSurfaceWidth > 0 && mSurfaceHeight > 0) {
+                checkRenderBackend(currentTimeMillis);
+            }
+
+            Canvas canvas;
+            try {
+                canvas = mRenderBackend.lockCanvas(holder);
+            } catch (RuntimeException e) {
+                if (!mRenderBackend.isHardwareAccelerated()) {
+                    throw e;
+                }
+                Log.w(TAG, "Hardware canvas unavailable, falling back to software.", e);
+                mRenderBackend = RenderBackend.SOFTWARE;
+                mFullRedrawPending = true;
+                canvas = mRenderBackend.lockCanvas(holder);
+            }
+
+            if (canvas == null) {
+                return;
+            }
+
+            try {
+                drawFrameAt(canvas, currentTimeMillis);
+            } finally {
+                mRenderBackend.unlockCanvasAndPost(holder, canvas);
+            }
+
+            if (!mAmbient && mWristRaiseUptimeMillis >= 0) {
+                reportWristRaiseLatency(SystemClock.uptimeMillis() - mWristRaiseUptimeMillis);
+                mWristRaiseUptimeMillis = -1;
+            }
+
+            // Now that this frame is on screen, bring the other mode's complication renders up
+            // to date so the next mode switch finds them ready. A hot device renders them when
+            // they are needed instead.
+            // The recorded static scene has no complication layers to prewarm.
+            if (!RECORD_STATIC_SCENE
+                    && !ThermalGovernor.defersComplicationWork(mThermalStatus)) {
+                prewarmComplicationLayers(
+                        mAmbient ? mInteractiveLayers : mAmbientLayers,
+                        mWallClock.getTimeInMillis());
+            }
+
+            if (mAmbient) {
+                // The CPU is awake for this tick anyway; prepare the next one now that this
+                // frame is on screen.
+                renderAmbientAheadFrame(mWallClock.getTimeInMillis());
+            }
+        }
+
+        private void reportWristRaiseLatency(long latencyMs) {
+            mWristRaiseCount++;
+            mWristRaiseTotalLatencyMs += latencyMs;
+            mWristRaiseMaxLatencyMs = Math.max(mWristRaiseMaxLatencyMs, latencyMs);
+            Log.d(
+                    TAG,
+                    "Wrist raise to first interactive frame: " + latencyMs + " ms (average "
+                            + mWristRaiseTotalLatencyMs / mWristRaiseCount + " ms, max "
+                            + mWristRaiseMaxLatencyMs + " ms over " + mWristRaiseCount + ")");
+        }
+
+        /*
+         * Re-renders any out-of-date complication layer of {@code layers}, which belong to the
+         * mode that is not showing. The renderers are switched to that mode just for the render.
+         */
+        private void prewarmComplicationLayers(ModeLayers layers, long currentTimeMillis) {
             int complicationId;
             ComplicationDrawable complicationDrawable;
+            ComplicationLayer complicationLayer;
+            LiteComplication liteComplication;
 
             for (int i = 0; i < COMPLICATION_IDS.length; i++) {
                 complicationId = COMPLICATION_IDS[i];
+                liteComplication = mLiteComplicationSparseArray.get(complicationId);
+                if (liteComplication != null && liteComplication.isEmpty()) {
+                    continue;
+                }
                 complicationDrawable = mComplicationDrawableSparseArray.get(complicationId);
+                complicationLayer = layers.mComplicationLayers.get(complicationId);
+                if (complicationLayer.isCurrent(
+                        layers.mIsAmbient,
+                        mLowBitAmbient,
+                        mBurnInProtection,
+                        complicationDrawable.getBounds())) {
+                    continue;
+                }
 
-                complicationDrawable.draw(canvas, currentTimeMillis);
+                complicationDrawable.setInAmbientMode(layers.mIsAmbient);
+                if (liteComplication != null) {
+                    liteComplication.setInAmbientMode(layers.mIsAmbient);
+                }
+                complicationLayer.update(
+                        liteComplication,
+                        complicationDrawable,
+                        currentTimeMillis,
+                        layers.mIsAmbient,
+                        mLowBitAmbient,
+                        mBurnInProtection);
+                complicationDrawable.setInAmbientMode(mAmbient);
+                if (liteComplication != null) {
+                    liteComplication.setInAmbientMode(mAmbient);
+                }
             }
         }
 
-        private void drawBackground(Canvas canvas) {
-            if (mAmbient && (mLowBitAmbient || mBurnInProtection)) {
-                canvas.drawColor(Color.BLACK);
+        /*
+         * Renders the ambient frame for the start of the minute after {@code currentTimeMillis}
+         * into mAmbientFrameBitmap. Complications whose text changes by then are rendered for
+         * that time too, so the frame shows their new text.
+         */
+        private void renderAmbientAheadFrame(long currentTimeMillis) {
+            long minuteMillis = TimeUnit.MINUTES.toMillis(1);
+            long aheadTimeMillis = (currentTimeMillis / minuteMillis + 1) * minuteMillis;
+            if (mAmbientAheadTimeMillis == aheadTimeMillis || mSurfaceWidth == 0) {
+                return;
+            }
+            discardAmbientAheadFrame();
+
+            int complicationId;
+            for (int i = 0; i < COMPLICATION_IDS.length; i++) {
+                complicationId = COMPLICATION_IDS[i];
+                if (mComplicationNextChangeTimes.get(complicationId, ComplicationChangeTimes.NEVER)
+                        <= aheadTimeMillis) {
+                    mAmbientLayers.mComplicationLayers.get(complicationId).invalidate();
+                    mRenderPipeline.invalidate(RenderPipeline.INPUT_COMPLICATION_DATA);
+                    mAmbientAheadComplicationIds.put(complicationId, true);
+                }
+            }
+
+            renderAmbientFrame(aheadTimeMillis, currentTimeMillis);
+            mAmbientAheadTimeMillis = aheadTimeMillis;
+        }
+
+        /*
+         * Renders the ambient frame for {@code frameTimeMillis} into mAmbientFrameBitmap, within
+         * the lit pixel budget. The wall clock is left at {@code currentTimeMillis}.
+         */
+        private void renderAmbientFrame(long frameTimeMillis, long currentTimeMillis) {
+            if (mAmbientFrameBitmap == null
+                    || mAmbientFrameBitmap.getWidth() != mSurfaceWidth
+                    || mAmbientFrameBitmap.getHeight() != mSurfaceHeight) {
+                mBitmapPool.release(mAmbientFrameBitmap);
+                // Same format as the surface, like mFrameBitmap.
+                mAmbientFrameBitmap =
+                        mBitmapPool.acquire(
+                                mSurfaceWidth, mSurfaceHeight, Bitmap.Config.ARGB_8888);
+                mAmbientFrameCanvas = new Canvas(mAmbientFrameBitmap);
+            }
+
+            mWallClock.setTimeInMillis(frameTimeMillis);
+            drawFrame(mAmbientFrameCanvas, frameTimeMillis);
+            mWallClock.setTimeInMillis(currentTimeMillis);
+            enforceAmbientPixelBudget(frameTimeMillis, currentTimeMillis);
+        }
+
+        /*
+         * Measures the lit pixels of the ambient frame just rendered for {@code frameTimeMillis}
+         * and, as long as it exceeds the budget, drops more ambient content and renders it again.
+         */
+        private void enforceAmbientPixelBudget(long frameTimeMillis, long currentTimeMillis) {
+            while (mAmbientPixelPolicy.onFrameMeasured(
+                    mOnPixelRatioMeter.measure(mAmbientFrameBitmap))) {
+                Log.d(
+                        TAG,
+                        "Ambient frame lights " + mAmbientPixelPolicy.getLastOnPixelRatio()
+                                + " of the screen, degrading to level "
+                                + mAmbientPixelPolicy.getLevel());
+
+                // Only the ambient layers depend on the level.
+                applyAmbientComplicationLevel();
+                renderModeLayers(mAmbientLayers);
+                applyHandStyles(mAmbient);
+
+                mWallClock.setTimeInMillis(frameTimeMillis);
+                drawFrame(mAmbientFrameCanvas, frameTimeMillis);
+                mWallClock.setTimeInMillis(currentTimeMillis);
+            }
+        }
+
+        /*
+         * Leaves complication backgrounds out in ambient mode if the lit pixel budget demands, and
+         * has the ambient complication layers re-rendered accordingly.
+         */
+        private void applyAmbientComplicationLevel() {
+            boolean hidden =
+                    mAmbientPixelPolicy.getLevel()
+                            >= AmbientPixelPolicy.LEVEL_NO_COMPLICATION_BACKGROUNDS;
+            for (int i = 0; i < COMPLICATION_IDS.length; i++) {
+                mComplicationDrawableSparseArray
+                        .get(COMPLICATION_IDS[i])
+                        .setBackgroundColorAmbient(
+                                hidden ? Color.TRANSPARENT : mComplicationAmbientBackgroundColor);
+            }
+            for (int i = 0; i < mLiteComplicationSparseArray.size(); i++) {
+                mLiteComplicationSparseArray.valueAt(i).setAmbientBackgroundHidden(hidden);
+            }
+            for (int i = 0; i < mAmbientLayers.mComplicationLayers.size(); i++) {
+                mAmbientLayers.mComplicationLayers.valueAt(i).invalidate();
+            }
+            mRenderPipeline.invalidate(RenderPipeline.INPUT_STYLE);
+        }
+
+        private void discardAmbientAheadFrame() {
+            mAmbientAheadTimeMillis = -1;
+            // Their ambient layers are ahead of the clock; rendered again when next drawn.
+            int complicationId;
+            for (int i = 0; i < mAmbientAheadComplicationIds.size(); i++) {
+                complicationId = mAmbientAheadComplicationIds.keyAt(i);
+                mAmbientLayers.mComplicationLayers.get(complicationId).invalidate();
+                mRenderPipeline.invalidate(RenderPipeline.INPUT_COMPLICATION_DATA);
+            }
+            mAmbientAheadComplicationIds.clear();
+        }
+
+        @Override
+        public void onDraw(Canvas canvas, Rect bounds) {
+            // Never called: invalidate() and onSurfaceRedrawNeeded() draw through drawNow().
+        }
+
+        private void drawFrameAt(Canvas canvas, long now) {
+            long frameStartCpuNs = Debug.threadCpuTimeNanos();
+            mWallClock.setTimeInMillis(now);
+
+            if (mAmbient
+                    && mAmbientAheadTimeMillis >= 0
+                    && now - mAmbientAheadTimeMillis >= 0
+                    && now - mAmbientAheadTimeMillis < TimeUnit.MINUTES.toMillis(1)) {
+                // Rendered during the previous tick for exactly this minute.
+                canvas.drawBitmap(mAmbientFrameBitmap, 0, 0, null);
+                return;
+            }
+
+            if (mAmbient && mSurfaceWidth > 0) {
+                // Rendered offscreen first, so even the first ambient frame, and those that
+                // couldn't be rendered ahead, are held to the lit pixel budget before they show.
+                discardAmbientAheadFrame();
+                renderAmbientFrame(now, now);
+                canvas.drawBitmap(mAmbientFrameBitmap, 0, 0, null);
+                mFullRedrawPending = true;
+                return;
+            }
+
+            if (!mPartialRedrawEnabled
+                    || mRenderBackend.isHardwareAccelerated()
+                    || mAmbient
+                    || mFrameBitmap == null) {
+                // On a hardware canvas compositing the cached layers is cheaper than a retained
+                // frame.
+                drawFrame(canvas, now);
+                mFullRedrawPending = true;
             } else {
-                canvas.drawPaint(mBackgroundPaint);
+                drawPartialFrame(canvas, now);
+            }
+
+            if (!mAmbient) {
+                // threadCpuTimeNanos() returns -1 where per-thread CPU time isn't supported.
+                int frameCpuUs =
+                        frameStartCpuNs >= 0
+                                ? (int) ((Debug.threadCpuTimeNanos() - frameStartCpuNs) / 1000)
+                                : -1;
+                if (mRenderHandler != null) {
+                    mUpdateTimeHandler.sendMessage(
+                            mUpdateTimeHandler.obtainMessage(MSG_FRAME_DRAWN, frameCpuUs, 0));
+                } else {
+                    onInteractiveFrameDrawn(frameCpuUs);
+                }
             }
         }
 
-        private void drawHands(Canvas canvas) {
-            /*
-             * Draw ticks. Usually you will want to bake this directly into the photo, but in
-             * cases where you want to allow users to select their own photos, this dynamically
-             * creates them on top of the photo.
-             */
-            float innerTickRadius = mCenterX - 10;
-            float outerTickRadius = mCenterX;
-            for (int tickIndex = 0; tickIndex < 12; tickIndex++) {
-                float tickRot = (float) (tickIndex * Math.PI * 2 / 12);
-                float innerX = (float) Math.sin(tickRot) * innerTickRadius;
-                float innerY = (float) -Math.cos(tickRot) * innerTickRadius;
-                float outerX = (float) Math.sin(tickRot) * outerTickRadius;
-                float outerY = (float) -Math.cos(tickRot) * outerTickRadius;
-                canvas.drawLine(
-                        mCenterX + innerX,
-                        mCenterY + innerY,
-                        mCenterX + outerX,
-                        mCenterY + outerY,
-                        mHourMinuteTicksHandPaint);
+        /*
+         * Feeds the frame's CPU time, or -1 if it couldn't be measured, to the frame rate policy
+         * and keeps vsync-driven animation going either way.
+         */
+        private void onInteractiveFrameDrawn(long frameCpuUs) {
+            if (frameCpuUs >= 0
+                    && mFrameRatePolicy.onFrameDrawn(SystemClock.uptimeMillis(), frameCpuUs)) {
+                Log.d(TAG, "Interactive frame rate: " + mFrameRatePolicy.getFramesPerSecond());
+                updateTimer();
+            } else if (mFrameRatePolicy.isVsyncDriven() && shouldTimerBeRunning()) {
+                // invalidate() draws on the next vsync, so this sweeps at the display rate.
+                invalidate();
             }
+        }
 
-            /*
-             * These calculations reflect the rotation in degrees per unit of time, e.g.,
-             * 360 / 60 = 6 and 360 / 12 = 30.
-             */
-            final float seconds =
-                    (mCalendar.get(Calendar.SECOND) + mCalendar.get(Calendar.MILLISECOND) / 1000f);
-            final float secondsRotation = seconds * 6f;
+        /*
+         * Acquires the retained interactive frame for the current surface size, unless it is
+         * already held. It is only drawn in full after this, as mFullRedrawPending is set
+         * whenever it was released.
+         */
+        private void acquireFrameBitmap() {
+            if (RECORD_STATIC_SCENE || mFrameBitmap != null || mSurfaceWidth <= 0) {
+                // A recorded scene is replayed in full every frame instead.
+                return;
+            }
+            // Kept in the surface's own format, so copying it to the screen needs no conversion
+            // and the anti-aliased edges and shadows are not banded to 16 bits.
+            mFrameBitmap =
+                    mBitmapPool.acquire(mSurfaceWidth, mSurfaceHeight, Bitmap.Config.ARGB_8888);
+            mFrameCanvas = new Canvas(mFrameBitmap);
+        }
 
-            final float minutesRotation = mCalendar.get(Calendar.MINUTE) * 6f;
+        private void drawPartialFrame(Canvas canvas, long now) {
+            updateDirtyRect();
 
-            final float hourHandOffset = mCalendar.get(Calendar.MINUTE) / 2f;
-            final float hoursRotation = (mCalendar.get(Calendar.HOUR) * 30) + hourHandOffset;
+            if (!mDirtyRect.isEmpty()) {
+                mFrameCanvas.save();
+                mFrameCanvas.clipRect(mDirtyRect);
+                drawFrame(mFrameCanvas, now);
+                mFrameCanvas.restore();
+                mDirtyRect.setEmpty();
+            }
 
-            /*
-             * Saves the canvas state before we rotate it.
-             */
+            canvas.drawBitmap(mFrameBitmap, 0, 0, null);
+        }
+
+        private void drawFrame(Canvas canvas, long now) {
+            if (!isBurnInOutlined(mAmbient)) {
+                mRenderBackend.drawFrame(canvas, mRenderPipeline, now);
+                return;
+            }
+
+            // Shifting the composited layers is far cheaper than re-rendering them shifted.
+            int offsetCount = BURN_IN_OFFSETS.length / 2;
+            int offset = (int) (TimeUnit.MILLISECONDS.toMinutes(now) % offsetCount);
+            canvas.drawColor(Color.BLACK);
             canvas.save();
+            canvas.translate(
+                    BURN_IN_OFFSETS[2 * offset] * BURN_IN_SHIFT_PX,
+                    BURN_IN_OFFSETS[2 * offset + 1] * BURN_IN_SHIFT_PX);
+            mRenderBackend.drawFrame(canvas, mRenderPipeline, now);
+            canvas.restore();
+        }
 
-            canvas.rotate(hoursRotation, mCenterX, mCenterY);
-            canvas.drawLine(
-                    mCenterX,
-                    mCenterY - CENTER_GAP_AND_CIRCLE_RADIUS,
-                    mCenterX,
-                    mCenterY - mHourHandLength,
-                    mHourMinuteTicksHandPaint);
+        /*
+         * Adds the regions that changed since the last interactive frame to mDirtyRect. The hour
+         * and minute hands only move once a minute, so a new minute repaints the whole face;
+         * otherwise only the old and new second hand areas are added.
+         */
+        private void updateDirtyRect() {
+            int minute = mWallClock.getMinute();
+            if (mFullRedrawPending || minute != mLastDrawnMinute) {
+                mDirtyRect.set(0, 0, mSurfaceWidth, mSurfaceHeight);
+                mFullRedrawPending = false;
+                mLastDrawnMinute = minute;
+            }
 
-            canvas.rotate(minutesRotation - hoursRotation, mCenterX, mCenterY);
-            canvas.drawLine(
-                    mCenterX,
-                    mCenterY - CENTER_GAP_AND_CIRCLE_RADIUS,
-                    mCenterX,
-                    mCenterY - mMinuteHandLength,
-                    mHourMinuteTicksHandPaint);
+            computeHandBounds(
+                    mWallClock.getSecondsRotation(),
+                    mSecondHandLength,
+                    SECOND_TICK_STROKE_WIDTH,
+                    mSecondHandBounds);
+            mDirtyRect.union(mLastSecondHandBounds);
+            mDirtyRect.union(mSecondHandBounds);
+            mLastSecondHandBounds.set(mSecondHandBounds);
+        }
+
+        /*
+         * Computes the screen area covered by a hand at the given rotation, including its stroke,
+         * shadow and the center circle drawn on top of it.
+         */
+        private void computeHandBounds(
+                float rotation, float length, float strokeWidth, Rect outBounds) {
+            double radians = Math.toRadians(rotation);
+            float sin = (float) Math.sin(radians);
+            float cos = (float) -Math.cos(radians);
+
+            float startX = mCenterX + sin * CENTER_GAP_AND_CIRCLE_RADIUS;
+            float startY = mCenterY + cos * CENTER_GAP_AND_CIRCLE_RADIUS;
+            float endX = mCenterX + sin * length;
+            float endY = mCenterY + cos * length;
+
+            // One extra pixel for anti-aliasing.
+            int outset = (int) Math.ceil(strokeWidth / 2f + SHADOW_RADIUS) + 1;
+            outBounds.set(
+                    (int) Math.floor(Math.min(startX, endX)) - outset,
+                    (int) Math.floor(Math.min(startY, endY)) - outset,
+                    (int) Math.ceil(Math.max(startX, endX)) + outset,
+                    (int) Math.ceil(Math.max(startY, endY)) + outset);
+
+            int circleOutset =
+                    (int) Math.ceil(CENTER_GAP_AND_CIRCLE_RADIUS + SHADOW_RADIUS) + outset;
+            outBounds.union(
+                    (int) mCenterX - circleOutset,
+                    (int) mCenterY - circleOutset,
+                    (int) mCenterX + circleOutset,
+                    (int) mCenterY + circleOutset);
+        }
+
+        /*
+         * Brings the current mode's complication layers up to date. Run by the complications stage
+         * only when complication data, the mode or the style changed.
+         */
+        private void renderComplications(long currentTimeMillis) {
+            if (RECORD_STATIC_SCENE) {
+                // Already part of the static scene recorded by the dial stage.
+                return;
+            }
+
+            int complicationId;
+            ComplicationDrawable complicationDrawable;
+            ComplicationLayer complicationLayer;
+            LiteComplication liteComplication;
+
+            for (int i = 0; i < COMPLICATION_IDS.length; i++) {
+                complicationId = COMPLICATION_IDS[i];
+                liteComplication = mLiteComplicationSparseArray.get(complicationId);
+                if (liteComplication != null && liteComplication.isEmpty()) {
+                    continue;
+                }
+                complicationDrawable = mComplicationDrawableSparseArray.get(complicationId);
+                complicationLayer = currentLayers().mComplicationLayers.get(complicationId);
+
+                if (ThermalGovernor.freezesComplicationLayers(mThermalStatus)
+                        && complicationLayer.hasRender(complicationDrawable.getBounds())) {
+                    // Too hot to re-render; the last render will do until the device cools down.
+                    continue;
+                }
+
+                // Re-renders only if the data, ambient state, screen properties or bounds changed.
+                complicationLayer.update(
+                        liteComplication,
+                        complicationDrawable,
+                        currentTimeMillis,
+                        mAmbient,
+                        mLowBitAmbient,
+                        mBurnInProtection);
+            }
+        }
 
+        private void drawComplications(Canvas canvas) {
+            // TODO: Step 4, drawComplications()
+            if (RECORD_STATIC_SCENE) {
+                // Already part of the static scene replayed by drawBackground().
+                return;
+            }
+
+            LiteComplication liteComplication;
+
+            for (int i = 0; i < COMPLICATION_IDS.length; i++) {
+                liteComplication = mLiteComplicationSparseArray.get(COMPLICATION_IDS[i]);
+                if (liteComplication != null && liteComplication.isEmpty()) {
+                    // Nothing to draw, not even a blit of a transparent layer.
+                    continue;
+                }
+                currentLayers().mComplicationLayers.get(COMPLICATION_IDS[i]).draw(canvas);
+            }
+        }
+
+        private void drawBackground(Canvas canvas) {
+            if (RECORD_STATIC_SCENE && mStaticScenePicture != null) {
+                canvas.drawPicture(mStaticScenePicture);
+            } else if (currentLayers().mDialBitmap != null) {
+                Bitmap dialBitmap = currentLayers().mDialBitmap;
+                if (dialBitmap.getConfig() == Bitmap.Config.ALPHA_8) {
+                    renderBackground(canvas, mAmbient);
+                    canvas.drawBitmap(dialBitmap, 0, 0, mDialAlphaPaint);
+                } else {
+                    canvas.drawBitmap(dialBitmap, 0, 0, null);
+                }
+            } else {
+                renderBackground(canvas, mAmbient);
+                renderTicks(canvas, mAmbient);
+            }
+        }
+
+        private void renderBackground(Canvas canvas, boolean ambient) {
+            if (ambient && (mLowBitAmbient || mBurnInProtection)) {
+                canvas.drawColor(Color.BLACK);
+            } else {
+                canvas.drawPaint(mBackgroundPaint);
+            }
+            if (isBackgroundImageShown(ambient)) {
+                canvas.drawBitmap(
+                        mBackgroundImage, 0, 0, ambient ? mAmbientBackgroundImagePaint : null);
+            }
+        }
+
+        /*
+         * Whether the background photo is drawn in this mode. Screens with low-bit ambient or
+         * burn-in protection get a black ambient background instead, as do ambient frames over
+         * the lit pixel budget.
+         */
+        private boolean isBackgroundImageShown(boolean ambient) {
+            return mBackgroundImage != null
+                    && !(ambient
+                            && (mLowBitAmbient
+                                    || mBurnInProtection
+                                    || mAmbientPixelPolicy.getLevel()
+                                            >= AmbientPixelPolicy.LEVEL_NO_BACKGROUND_IMAGE));
+        }
+
+        private void renderTicks(Canvas canvas, boolean ambient) {
             /*
-             * Ensure the "seconds" hand is drawn only when we are in interactive mode.
-             * Otherwise, we only update the watch face once a minute.
+             * Draw ticks. Usually you will want to bake this directly into the photo, but as users
+             * can select their own photos, this draws them on top of the photo when the dial
+             * layers are rendered.
              */
-            if (!mAmbient) {
-                canvas.rotate(secondsRotation - minutesRotation, mCenterX, mCenterY);
-                canvas.drawLine(
-                        mCenterX,
-                        mCenterY - CENTER_GAP_AND_CIRCLE_RADIUS,
-                        mCenterX,
-                        mCenterY - mSecondHandLength,
-                        mSecondHandPaint);
-            }
-            canvas.drawCircle(
-                    mCenterX, mCenterY, CENTER_GAP_AND_CIRCLE_RADIUS, mHourMinuteTicksHandPaint);
-
-            /* Restore the canvas' original orientation. */
-            canvas.restore();
+            if (isBurnInOutlined(ambient)) {
+                canvas.drawPath(mTickOutlinePath, mBurnInOutlinePaint);
+            } else {
+                canvas.drawLines(mTickPoints, mHourMinuteTicksHandPaint);
+            }
+        }
+
+        /* Whether ticks and hands are drawn as outlines for burn-in protection in this mode. */
+        private boolean isBurnInOutlined(boolean ambient) {
+            return ambient && mBurnInProtection;
+        }
+
+        private ModeLayers currentLayers() {
+            return mAmbient ? mAmbientLayers : mInteractiveLayers;
         }
 
         @Override
-        public void onVisibilityChanged(boolean visible) {
+        public synchronized void onVisibilityChanged(boolean visible) {
             super.onVisibilityChanged(visible);
 
             if (visible) {
                 registerReceiver();
                 // Update time zone in case it changed while we weren't visible.
-                mCalendar.setTimeZone(TimeZone.getDefault());
+                onTimeZoneChanged();
                 invalidate();
             } else {
                 unregisterReceiver();
@@ -652,6 +2452,7 @@ public class ComplicationWatchFaceService extends CanvasWatchFaceService {
             if (shouldTimerBeRunning()) {
                 mUpdateTimeHandler.sendEmptyMessage(MSG_UPDATE_TIME);
             }
+            scheduleNextComplicationChange();
         }
 
         /*
@@ -661,5 +2462,50 @@ public class ComplicationWatchFaceService extends CanvasWatchFaceService {
         private boolean shouldTimerBeRunning() {
             return isVisible() && !isInAmbientMode();
         }
+
+        /*
+         * The layers that differ between interactive and ambient mode: dial, hand sprites and the
+         * render of each complication slot.
+         */
+        private class ModeLayers {
+            final boolean mIsAmbient;
+
+            final HandSprite mHourHandSprite = new HandSprite(mBitmapPool);
+            final HandSprite mMinuteHandSprite = new HandSprite(mBitmapPool);
+            final HandSprite mSecondHandSprite = new HandSprite(mBitmapPool);
+            final HandSprite mCenterDotSprite = new HandSprite(mBitmapPool);
+
+            /*
+             * Offscreen layer holding the background and the ticks. None of it changes between
+             * frames, so it is only re-rendered when the surface size or screen properties change.
+             */
+            Bitmap mDialBitmap;
+            Canvas mDialCanvas;
+
+            /* Maps complication ids to the offscreen cache of their last render in this mode. */
+            final SparseArray<ComplicationLayer> mComplicationLayers =
+                    new SparseArray<>(COMPLICATION_IDS.length);
+
+            ModeLayers(boolean isAmbient) {
+                mIsAmbient = isAmbient;
+                for (int i = 0; i < COMPLICATION_IDS.length; i++) {
+                    mComplicationLayers.put(
+                            COMPLICATION_IDS[i], new ComplicationLayer(mBitmapPool));
+                }
+            }
+
+            void release() {
+                mHourHandSprite.release();
+                mMinuteHandSprite.release();
+                mSecondHandSprite.release();
+                mCenterDotSprite.release();
+                mBitmapPool.release(mDialBitmap);
+                mDialBitmap = null;
+                mDialCanvas = null;
+                for (int i = 0; i < mComplicationLayers.size(); i++) {
+                    mComplicationLayers.valueAt(i).release();
+                }
+            }
+        }
     }
 }
@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.wearable.complications;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chooses the interactive frame rate of the watch face.
+ *
+ * <p>Starts at a preferred rate from {@link #SUPPORTED_FRAMES_PER_SECOND} and measures the CPU time
+ * spent drawing over one-minute windows. As soon as a window exceeds the CPU budget the rate steps
+ * down one level; at the end of a window the rate steps back up one level if the projected cost at
+ * the higher rate still fits comfortably within the budget. Rates at or above {@link
+ * #VSYNC_FRAMES_PER_SECOND} are meant to be driven by the display's vsync rather than a timer.
+ */
+final class FrameRatePolicy {
+
+    /** Frame rates the watch face can run at, lowest first. 1 fps is the classic ticking hand. */
+    static final int[] SUPPORTED_FRAMES_PER_SECOND = {1, 5, 15, 30, 60};
+
+    static final int VSYNC_FRAMES_PER_SECOND = 60;
+
+    private static final long WINDOW_MS = TimeUnit.MINUTES.toMillis(1);
+    private static final long MICROS_PER_SECOND = TimeUnit.SECONDS.toMicros(1);
+
+    // Only step up if the higher rate is projected to use at most this share of the budget.
+    private static final float STEP_UP_BUDGET_FRACTION = 0.75f;
+
+    private final int mPreferredIndex;
+    private int mCurrentIndex;
+    private int mMaxIndex = SUPPORTED_FRAMES_PER_SECOND.length - 1;
+
+    private final long mCpuBudgetUsPerMinute;
+
+    private long mWindowStartMs = -1;
+    private long mWindowCpuUs;
+
+    /**
+     * @param cpuBudgetUsPerMinute CPU time in microseconds that interactive drawing may use per
+     *     minute before the rate drops
+     */
+    FrameRatePolicy(int preferredFramesPerSecond, long cpuBudgetUsPerMinute) {
+        mPreferredIndex = indexOf(preferredFramesPerSecond);
+        mCurrentIndex = mPreferredIndex;
+        mCpuBudgetUsPerMinute = cpuBudgetUsPerMinute;
+    }
+
+    /**
+     * Caps the frame rate, e.g. to save battery, at one of {@link #SUPPORTED_FRAMES_PER_SECOND}.
+     * Returns true if the current rate dropped, in which case the caller should reschedule its
+     * frame timer. A raised cap is climbed back up to like any other step up.
+     */
+    boolean setMaxFramesPerSecond(int maxFramesPerSecond) {
+        mMaxIndex = indexOf(maxFramesPerSecond);
+        if (mCurrentIndex > mMaxIndex) {
+            mCurrentIndex = mMaxIndex;
+            resetWindow();
+            return true;
+        }
+        return false;
+    }
+
+    int getFramesPerSecond() {
+        return SUPPORTED_FRAMES_PER_SECOND[mCurrentIndex];
+    }
+
+    /** Returns whether frames should be driven by vsync instead of a timer. */
+    boolean isVsyncDriven() {
+        return getFramesPerSecond() >= VSYNC_FRAMES_PER_SECOND;
+    }
+
+    /**
+     * Returns the delay from {@code currentTimeMillis} to the next frame boundary, so frames land
+     * on whole fractions of a second (e.g. exactly on the second at 1 fps).
+     */
+    long getDelayToNextFrameMs(long currentTimeMillis) {
+        long frameIntervalUs = MICROS_PER_SECOND / getFramesPerSecond();
+        long currentTimeUs = currentTimeMillis * 1000;
+        long delayUs = frameIntervalUs - (currentTimeUs % frameIntervalUs);
+        return (delayUs + 999) / 1000;
+    }
+
+    /** Forgets the current measurement window, e.g. after leaving interactive mode. */
+    void resetWindow() {
+        mWindowStartMs = -1;
+        mWindowCpuUs = 0;
+    }
+
+    /**
+     * Records the CPU time of one interactive frame in microseconds. A frame takes well under a
+     * millisecond at low rates, so whole milliseconds would round most frames down to nothing.
+     * Returns true if the frame rate changed, in which case the caller should reschedule its frame
+     * timer.
+     */
+    boolean onFrameDrawn(long uptimeMillis, long frameCpuUs) {
+        if (mWindowStartMs < 0) {
+            mWindowStartMs = uptimeMillis;
+        }
+        mWindowCpuUs += frameCpuUs;
+
+        if (mWindowCpuUs > mCpuBudgetUsPerMinute) {
+            resetWindow();
+            if (mCurrentIndex > 0) {
+                mCurrentIndex--;
+                return true;
+            }
+            return false;
+        }
+
+        if (uptimeMillis - mWindowStartMs >= WINDOW_MS) {
+            long windowCpuUs = mWindowCpuUs;
+            resetWindow();
+            if (mCurrentIndex < Math.min(mPreferredIndex, mMaxIndex)) {
+                int nextFramesPerSecond = SUPPORTED_FRAMES_PER_SECOND[mCurrentIndex + 1];
+                float projectedCpuUs =
+                        windowCpuUs * nextFramesPerSecond / (float) getFramesPerSecond();
+                if (projectedCpuUs <= mCpuBudgetUsPerMinute * STEP_UP_BUDGET_FRACTION) {
+                    mCurrentIndex++;
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static int indexOf(int framesPerSecond) {
+        for (int i = 0; i < SUPPORTED_FRAMES_PER_SECOND.length; i++) {
+            if (SUPPORTED_FRAMES_PER_SECOND[i] == framesPerSecond) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported frame rate: " + framesPerSecond);
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.wearable.complications;
+
+import android.support.wearable.complications.ComplicationData;
+import android.util.SparseArray;
+import android.util.SparseBooleanArray;
+
+/**
+ * Inputs of one frame as handed from the main thread to the render thread: the time to draw, the
+ * complication data that arrived since the previous frame, the slots whose renderers asked to be
+ * drawn again since then, e.g. because an icon finished loading, and whether complication text
+ * is due to change.
+ *
+ * <p>The engine double-buffers two snapshots instead of allocating one per frame. The main thread
+ * collects input into one under the engine's snapshot lock; the render thread swaps it for the
+ * one it drew last, cleared, and then reads it without holding any lock, as the main thread only
+ * ever writes to the other one.
+ */
+final class FrameSnapshot {
+
+    private long mTimeMillis;
+    private final SparseArray<ComplicationData> mComplicationData = new SparseArray<>();
+    private final SparseBooleanArray mInvalidatedComplicationIds = new SparseBooleanArray();
+    private boolean mComplicationRefreshDue;
+
+    void setTimeMillis(long timeMillis) {
+        mTimeMillis = timeMillis;
+    }
+
+    long getTimeMillis() {
+        return mTimeMillis;
+    }
+
+    /** Records data that arrived for a complication, replacing any that arrived before it. */
+    void putComplicationData(int complicationId, ComplicationData complicationData) {
+        mComplicationData.put(complicationId, complicationData);
+    }
+
+    /** Returns the number of complications that received data since the previous frame. */
+    int getComplicationDataCount() {
+        return mComplicationData.size();
+    }
+
+    int getComplicationId(int index) {
+        return mComplicationData.keyAt(index);
+    }
+
+    ComplicationData getComplicationData(int index) {
+        return mComplicationData.valueAt(index);
+    }
+
+    /** Records that a complication's renders went stale. */
+    void invalidateComplication(int complicationId) {
+        mInvalidatedComplicationIds.put(complicationId, true);
+    }
+
+    /** Returns the number of complications whose renders went stale since the previous frame. */
+    int getInvalidatedComplicationCount() {
+        return mInvalidatedComplicationIds.size();
+    }
+
+    int getInvalidatedComplicationId(int index) {
+        return mInvalidatedComplicationIds.keyAt(index);
+    }
+
+    void setComplicationRefreshDue() {
+        mComplicationRefreshDue = true;
+    }
+
+    /**
+     * Returns whether the change timer or a time tick fired since the previous frame, so the
+     * complications whose text changed by now have to be re-rendered.
+     */
+    boolean isComplicationRefreshDue() {
+        return mComplicationRefreshDue;
+    }
+
+    /** Empties the snapshot for the next frame's input, keeping its storage. */
+    void clear() {
+        mComplicationData.clear();
+        mInvalidatedComplicationIds.clear();
+        mComplicationRefreshDue = false;
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.wearable.complications;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.Typeface;
+import android.text.TextPaint;
+
+import java.util.Arrays;
+
+/**
+ * Pre-rasterized digits and the symbols that usually come with them, for drawing numeric
+ * complication text (steps, heart rate, battery %) without running text layout.
+ *
+ * <p>The glyphs are drawn once with a given paint into a single bitmap strip; text made only of
+ * those glyphs is then drawn by blitting each glyph at its advance. The atlas is tied to the
+ * paint's size, typeface, color and anti-aliasing, and has to be rebuilt when any of them change,
+ * so one atlas is kept per display state.
+ */
+class GlyphAtlas {
+
+    /** Characters in the atlas. */
+    static final String GLYPHS = "0123456789%.,:-+/\u00B0 ";
+
+    // Lookup from character to glyph index; covers Latin-1, which holds all of GLYPHS.
+    private static final int[] GLYPH_INDEX = new int[256];
+
+    static {
+        Arrays.fill(GLYPH_INDEX, -1);
+        for (int i = 0; i < GLYPHS.length(); i++) {
+            GLYPH_INDEX[GLYPHS.charAt(i)] = i;
+        }
+    }
+
+    // Space left between glyphs so anti-aliased edges don't bleed into neighbors.
+    private static final int GLYPH_PADDING = 1;
+
+    private Bitmap mBitmap;
+    private float mAscent;
+
+    // Per glyph: left edge in the strip and advance width.
+    private final int[] mGlyphLeft = new int[GLYPHS.length()];
+    private final float[] mGlyphAdvance = new float[GLYPHS.length()];
+
+    // Paint state the strip was rasterized with.
+    private float mTextSize;
+    private Typeface mTypeface;
+    private int mColor;
+    private boolean mAntiAlias;
+
+    private final Rect mSrcRect = new Rect();
+    private final RectF mDstRect = new RectF();
+
+    /** Returns true if every character of {@code text} is in the atlas. */
+    static boolean canDraw(CharSequence text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c >= GLYPH_INDEX.length || GLYPH_INDEX[c] < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Returns whether the strip was rasterized with exactly this paint's text attributes. */
+    boolean isCurrentFor(Paint paint) {
+        return mBitmap != null
+                && mTextSize == paint.getTextSize()
+                && mTypeface == paint.getTypeface()
+                && mColor == paint.getColor()
+                && mAntiAlias == paint.isAntiAlias();
+    }
+
+    /** Rasterizes the glyphs with {@code paint}, reusing the strip bitmap if its size fits. */
+    void build(TextPaint paint) {
+        Paint.FontMetrics metrics = paint.getFontMetrics();
+        mAscent = metrics.ascent;
+        int height = (int) Math.ceil(metrics.descent - metrics.ascent) + 2 * GLYPH_PADDING;
+
+        char[] glyphs = GLYPHS.toCharArray();
+        int width = GLYPH_PADDING;
+        for (int i = 0; i < glyphs.length; i++) {
+            mGlyphLeft[i] = width;
+            mGlyphAdvance[i] = paint.measureText(glyphs, i, 1);
+            width += (int) Math.ceil(mGlyphAdvance[i]) + GLYPH_PADDING;
+        }
+
+        if (mBitmap == null || mBitmap.getWidth() != width || mBitmap.getHeight() != height) {
+            release();
+            mBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        } else {
+            mBitmap.eraseColor(Color.TRANSPARENT);
+        }
+
+        // The paint may be center-aligned for normal drawing; glyphs go in left-aligned.
+        Paint.Align align = paint.getTextAlign();
+        paint.setTextAlign(Paint.Align.LEFT);
+        Canvas canvas = new Canvas(mBitmap);
+        float baseline = GLYPH_PADDING - mAscent;
+        for (int i = 0; i < glyphs.length; i++) {
+            canvas.drawText(glyphs, i, 1, mGlyphLeft[i], baseline, paint);
+        }
+        paint.setTextAlign(align);
+
+        mTextSize = paint.getTextSize();
+        mTypeface = paint.getTypeface();
+        mColor = paint.getColor();
+        mAntiAlias = paint.isAntiAlias();
+    }
+
+    /** Returns the width of {@code text}, which must satisfy {@link #canDraw}. */
+    float measure(CharSequence text, int start, int end) {
+        float width = 0;
+        for (int i = start; i < end; i++) {
+            width += mGlyphAdvance[GLYPH_INDEX[text.charAt(i)]];
+        }
+        return width;
+    }
+
+    /**
+     * Draws {@code text}, which must satisfy {@link #canDraw}, horizontally centered on {@code
+     * centerX} with its baseline at {@code baseline}.
+     */
+    void drawCentered(
+            Canvas canvas, CharSequence text, int start, int end, float centerX, float baseline) {
+        float x = centerX - measure(text, start, end) / 2f;
+        float top = Math.round(baseline + mAscent) - GLYPH_PADDING;
+        int height = mBitmap.getHeight();
+        for (int i = start; i < end; i++) {
+            int glyph = GLYPH_INDEX[text.charAt(i)];
+            int glyphWidth = (int) Math.ceil(mGlyphAdvance[glyph]);
+            // Whole pixels only; the glyphs are blitted without filtering.
+            float left = Math.round(x);
+            mSrcRect.set(mGlyphLeft[glyph], 0, mGlyphLeft[glyph] + glyphWidth, height);
+            mDstRect.set(left, top, left + glyphWidth, top + height);
+            canvas.drawBitmap(mBitmap, mSrcRect, mDstRect, null);
+            x += mGlyphAdvance[glyph];
+        }
+    }
+
+    void release() {
+        if (mBitmap != null) {
+            mBitmap.recycle();
+            mBitmap = null;
+        }
+    }
+}
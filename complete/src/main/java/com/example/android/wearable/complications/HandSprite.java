@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.wearable.complications;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Path;
+
+/**
+ * Pre-rendered bitmap of a watch hand (or the center dot), shadow included.
+ *
+ * <p>Shadow layers are expensive on a software canvas, so each hand is stroked once per surface
+ * size and style into a small bitmap pointing at 12 o'clock, and drawn every frame by rotating that
+ * bitmap around the watch face's center.
+ */
+class HandSprite {
+
+    private final BitmapPool mBitmapPool;
+
+    private Bitmap mBitmap;
+    private Canvas mCanvas;
+    private Bitmap.Config mConfig = Bitmap.Config.ARGB_8888;
+
+    // When set, only the outline of the hand is rendered, for burn-in protection.
+    private Paint mOutlinePaint;
+    private final Paint mStrokePaint = new Paint();
+    private final Path mSourcePath = new Path();
+    private final Path mOutlinePath = new Path();
+
+    // Position of the watch face's center in sprite coordinates.
+    private float mPivotX;
+    private float mPivotY;
+
+    private final Matrix mMatrix = new Matrix();
+
+    HandSprite(BitmapPool bitmapPool) {
+        mBitmapPool = bitmapPool;
+    }
+
+    /**
+     * Sets the pixel format for the next render. ARGB_8888 keeps the paint's colors and shadow;
+     * ALPHA_8 keeps only coverage, at a quarter of the memory, and is drawn in the color of the
+     * paint passed to {@link #draw}.
+     */
+    void setConfig(Bitmap.Config config) {
+        mConfig = config;
+    }
+
+    /**
+     * Sets the paint that outlines the shape on the next render instead of filling it, or null to
+     * fill it. Outlines light far fewer pixels on screens that need burn-in protection.
+     */
+    void setOutlinePaint(Paint outlinePaint) {
+        mOutlinePaint = outlinePaint;
+    }
+
+    /**
+     * Renders a hand stroked with {@code paint} from {@code innerRadius} to {@code outerRadius}
+     * above the center. {@code shadowRadius} is reserved around the stroke even if the paint has
+     * no shadow, so switching styles reuses the same bitmap.
+     */
+    void renderHand(float innerRadius, float outerRadius, float shadowRadius, Paint paint) {
+        int margin = (int) Math.ceil(paint.getStrokeWidth() / 2f + shadowRadius) + 1;
+        int width = 2 * margin;
+        int height = (int) Math.ceil(outerRadius - innerRadius) + 2 * margin;
+        prepareBitmap(width, height);
+
+        mPivotX = margin;
+        mPivotY = margin + outerRadius;
+        if (mOutlinePaint == null) {
+            mCanvas.drawLine(
+                    mPivotX, mPivotY - innerRadius, mPivotX, mPivotY - outerRadius, paint);
+        } else {
+            mSourcePath.reset();
+            mSourcePath.moveTo(mPivotX, mPivotY - innerRadius);
+            mSourcePath.lineTo(mPivotX, mPivotY - outerRadius);
+            getStrokeOutline(paint, mStrokePaint, mSourcePath, mOutlinePath);
+            mCanvas.drawPath(mOutlinePath, mOutlinePaint);
+        }
+    }
+
+    /**
+     * Sets {@code outline} to the area {@code source} covers when stroked with {@code paint}'s
+     * width and cap. The watch face draws its lines with FILL-style paints, for which getFillPath()
+     * would return just the hairline source path, so the path is taken from a STROKE-style copy
+     * made in {@code strokePaint}.
+     */
+    static void getStrokeOutline(Paint paint, Paint strokePaint, Path source, Path outline) {
+        strokePaint.set(paint);
+        strokePaint.setStyle(Paint.Style.STROKE);
+        strokePaint.getFillPath(source, outline);
+    }
+
+    /** Renders a dot of {@code radius} filled with {@code paint}, centered on the pivot. */
+    void renderDot(float radius, float shadowRadius, Paint paint) {
+        int margin = (int) Math.ceil(radius + shadowRadius) + 1;
+        prepareBitmap(2 * margin, 2 * margin);
+
+        mPivotX = margin;
+        mPivotY = margin;
+        mCanvas.drawCircle(mPivotX, mPivotY, radius, mOutlinePaint == null ? paint : mOutlinePaint);
+    }
+
+    /** Draws the sprite rotated by {@code rotation} degrees around (centerX, centerY). */
+    void draw(Canvas canvas, float rotation, float centerX, float centerY, Paint paint) {
+        if (mBitmap == null) {
+            return;
+        }
+        mMatrix.setTranslate(centerX - mPivotX, centerY - mPivotY);
+        mMatrix.postRotate(rotation, centerX, centerY);
+        canvas.drawBitmap(mBitmap, mMatrix, paint);
+    }
+
+    /** Returns the bitmap to the pool. */
+    void release() {
+        if (mBitmap != null) {
+            mBitmapPool.release(mBitmap);
+            mBitmap = null;
+            mCanvas = null;
+        }
+    }
+
+    private void prepareBitmap(int width, int height) {
+        if (mBitmap == null
+                || mBitmap.getWidth() != width
+                || mBitmap.getHeight() != height
+                || mBitmap.getConfig() != mConfig) {
+            release();
+            mBitmap = mBitmapPool.acquire(width, height, mConfig);
+            mCanvas = new Canvas(mBitmap);
+        }
+        mBitmap.eraseColor(Color.TRANSPARENT);
+    }
+}
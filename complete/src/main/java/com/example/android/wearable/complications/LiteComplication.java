@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.wearable.complications;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.support.wearable.complications.ComplicationData;
+import android.util.SparseArray;
+
+/**
+ * Picks the {@link LiteComplicationRenderer} for one complication slot based on the type of its
+ * current data.
+ *
+ * <p>Empty and unconfigured slots draw nothing. Types without a lightweight renderer, and data a
+ * renderer refuses, are left to ComplicationDrawable: {@link #draw} then returns false. So is
+ * data whose icon or image failed to load in the background.
+ */
+class LiteComplication {
+
+    private final Context mContext;
+    private final LiteComplicationStyle mActiveStyle;
+    private final LiteComplicationStyle mAmbientStyle;
+    private final LiteComplicationRenderer.Callback mCallback;
+
+    // One renderer per type, created the first time data of that type arrives.
+    private final SparseArray<LiteComplicationRenderer> mRenderers = new SparseArray<>();
+
+    // Shared by the slot's renderers, as only one of them draws at a time.
+    private final TextLayoutCache mTextLayoutCache = new TextLayoutCache();
+
+    private ComplicationData mComplicationData;
+    private LiteComplicationRenderer mCurrentRenderer;
+    private boolean mEmpty = true;
+    private boolean mUseFallback;
+
+    private final Rect mBounds = new Rect();
+    private boolean mAmbient;
+    private boolean mLowBitAmbient;
+    private boolean mBurnInProtection;
+    private boolean mAmbientBackgroundHidden;
+    private boolean mImagesHidden;
+
+    LiteComplication(
+            Context context,
+            LiteComplicationStyle activeStyle,
+            LiteComplicationStyle ambientStyle,
+            LiteComplicationRenderer.Callback callback) {
+        mContext = context;
+        mActiveStyle = activeStyle;
+        mAmbientStyle = ambientStyle;
+        mCallback = callback;
+    }
+
+    void setBounds(Rect bounds) {
+        mBounds.set(bounds);
+        if (mCurrentRenderer != null) {
+            mCurrentRenderer.setBounds(mBounds);
+        }
+    }
+
+    void setInAmbientMode(boolean ambient) {
+        mAmbient = ambient;
+        applyStyle();
+    }
+
+    void setLowBitAmbient(boolean lowBitAmbient) {
+        mLowBitAmbient = lowBitAmbient;
+        applyStyle();
+    }
+
+    void setBurnInProtection(boolean burnInProtection) {
+        mBurnInProtection = burnInProtection;
+        applyStyle();
+    }
+
+    /** Sets whether the background is left out in ambient mode to light fewer pixels. */
+    void setAmbientBackgroundHidden(boolean hidden) {
+        mAmbientBackgroundHidden = hidden;
+        applyStyle();
+    }
+
+    /** Sets whether images are replaced by their text description to save power. */
+    void setImagesHidden(boolean hidden) {
+        mImagesHidden = hidden;
+        applyStyle();
+    }
+
+    void setComplicationData(ComplicationData complicationData) {
+        mCurrentRenderer = null;
+        mUseFallback = false;
+
+        int type =
+                complicationData == null
+                        ? ComplicationData.TYPE_EMPTY
+                        : complicationData.getType();
+        mEmpty =
+                type == ComplicationData.TYPE_EMPTY
+                        || type == ComplicationData.TYPE_NOT_CONFIGURED;
+        mComplicationData = mEmpty ? null : complicationData;
+        if (mEmpty) {
+            return;
+        }
+
+        LiteComplicationRenderer renderer = mRenderers.get(type);
+        if (renderer == null) {
+            renderer = LiteComplicationRenderer.create(type, mTextLayoutCache, mCallback);
+            if (renderer == null) {
+                mUseFallback = true;
+                return;
+            }
+            mRenderers.put(type, renderer);
+        }
+        if (!renderer.setComplicationData(mContext, complicationData)) {
+            mUseFallback = true;
+            return;
+        }
+        mCurrentRenderer = renderer;
+        applyStyle();
+        renderer.setBounds(mBounds);
+    }
+
+    /** Returns whether this slot currently draws nothing. */
+    boolean isEmpty() {
+        return mEmpty;
+    }
+
+    /** Returns whether the current data needs ComplicationDrawable to draw it. */
+    boolean usesFallback() {
+        return mUseFallback || (mCurrentRenderer != null && mCurrentRenderer.isMissingImage());
+    }
+
+    /**
+     * Draws the slot. Returns false if the data needs ComplicationDrawable instead, in which case
+     * nothing was drawn.
+     */
+    boolean draw(Canvas canvas, long currentTimeMillis) {
+        if (usesFallback()) {
+            return false;
+        }
+        if (mCurrentRenderer != null && mComplicationData.isActive(currentTimeMillis)) {
+            mCurrentRenderer.draw(canvas, currentTimeMillis);
+        }
+        return true;
+    }
+
+    TextLayoutCache getTextLayoutCache() {
+        return mTextLayoutCache;
+    }
+
+    void release() {
+        for (int i = 0; i < mRenderers.size(); i++) {
+            mRenderers.valueAt(i).release();
+        }
+    }
+
+    private void applyStyle() {
+        if (mCurrentRenderer != null) {
+            mCurrentRenderer.setStyle(
+                    mAmbient ? mAmbientStyle : mActiveStyle,
+                    mAmbient,
+                    mLowBitAmbient,
+                    mBurnInProtection);
+            mCurrentRenderer.setAmbientBackgroundHidden(mAmbientBackgroundHidden);
+            mCurrentRenderer.setImagesHidden(mImagesHidden);
+        }
+    }
+}
@@ -0,0 +1,694 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.wearable.complications;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.DashPathEffect;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+import android.graphics.drawable.Icon;
+import android.os.Handler;
+import android.support.wearable.complications.ComplicationData;
+import android.support.wearable.complications.ComplicationText;
+import android.text.TextPaint;
+
+/**
+ * Lean renderer for a single complication type.
+ *
+ * <p>ComplicationDrawable handles every type and re-lays out its content on each draw. These
+ * renderers each handle one of the types the watch face supports, compute their layout only when
+ * the bounds change, and draw with paints allocated once. Data they can't render (e.g. a missing
+ * icon) is reported from {@link #setComplicationData}, so the caller can fall back to
+ * ComplicationDrawable.
+ *
+ * <p>Icons and images are loaded in the background and drawn from the first frame after they
+ * arrive; the {@link Callback} is told when that frame is due. An image that fails to load is
+ * reported from {@link #isMissingImage} instead.
+ */
+abstract class LiteComplicationRenderer {
+
+    /** Told when an image finished loading, so the slot has to be drawn again. */
+    interface Callback {
+        void onImageLoaded();
+    }
+
+    // Share of the content width text may use; the rest is lost to the rounded corners.
+    private static final float TEXT_WIDTH_FRACTION = 0.9f;
+    private static final float ICON_ONLY_SIZE_FRACTION = 0.5f;
+    private static final float ICON_WITH_TEXT_SIZE_FRACTION = 0.3f;
+    private static final float IMAGE_ICON_SIZE_FRACTION = 0.6f;
+
+    /**
+     * Returns a renderer for {@code type}, or null if there is no lightweight one. Text layouts are
+     * cached in the slot's {@code textLayoutCache}.
+     */
+    static LiteComplicationRenderer create(
+            int type, TextLayoutCache textLayoutCache, Callback callback) {
+        switch (type) {
+            case ComplicationData.TYPE_SHORT_TEXT:
+                return new ShortText(textLayoutCache, callback);
+            case ComplicationData.TYPE_ICON:
+                return new IconOnly(textLayoutCache, callback);
+            case ComplicationData.TYPE_SMALL_IMAGE:
+                return new SmallImage(textLayoutCache, callback);
+            case ComplicationData.TYPE_RANGED_VALUE:
+                return new RangedValue(textLayoutCache, callback);
+            default:
+                return null;
+        }
+    }
+
+    final Rect mBounds = new Rect();
+
+    // Layout, computed in setBounds().
+    final Rect mContentBounds = new Rect();
+    private final RectF mBorderRect = new RectF();
+    private float mCornerRadius;
+    final Path mContentClipPath = new Path();
+    float mCenterX;
+    float mTextBaselineAlone;
+    float mTextBaselineWithTitle;
+    float mTitleBaseline;
+    float mTextBaselineBelowIcon;
+    final Rect mIconAloneBounds = new Rect();
+    final Rect mIconAboveTextBounds = new Rect();
+    private int mMaxTextWidth;
+
+    private final Paint mBackgroundPaint = new Paint();
+    private final Paint mBorderPaint = new Paint();
+    final TextPaint mTextPaint = new TextPaint();
+    final TextPaint mTitlePaint = new TextPaint();
+
+    // Numeric text in the main text style is blitted from these instead of laid out.
+    private final GlyphAtlas mInteractiveTextAtlas = new GlyphAtlas();
+    private final GlyphAtlas mAmbientTextAtlas = new GlyphAtlas();
+
+    private final TextLayoutCache mTextLayoutCache;
+    final Callback mCallback;
+
+    LiteComplicationStyle mStyle;
+    boolean mAmbient;
+    boolean mLowBitAmbient;
+    boolean mBurnInProtection;
+    boolean mAmbientBackgroundHidden;
+    boolean mImagesHidden;
+
+    LiteComplicationRenderer(TextLayoutCache textLayoutCache, Callback callback) {
+        mTextLayoutCache = textLayoutCache;
+        mCallback = callback;
+        mBackgroundPaint.setStyle(Paint.Style.FILL);
+        mBorderPaint.setStyle(Paint.Style.STROKE);
+        mTextPaint.setTextAlign(Paint.Align.CENTER);
+        mTitlePaint.setTextAlign(Paint.Align.CENTER);
+    }
+
+    /** Applies the style for the given display state. Re-runs the layout if text sizes change. */
+    void setStyle(
+            LiteComplicationStyle style,
+            boolean ambient,
+            boolean lowBitAmbient,
+            boolean burnInProtection) {
+        boolean textSizeChanged =
+                mStyle == null
+                        || mStyle.textSize != style.textSize
+                        || mStyle.titleSize != style.titleSize;
+
+        mStyle = style;
+        mAmbient = ambient;
+        mLowBitAmbient = lowBitAmbient;
+        mBurnInProtection = burnInProtection;
+
+        boolean antiAlias = !(ambient && lowBitAmbient);
+
+        mBackgroundPaint.setColor(style.backgroundColor);
+
+        mBorderPaint.setColor(style.borderColor);
+        mBorderPaint.setStrokeWidth(style.borderWidth);
+        mBorderPaint.setAntiAlias(antiAlias);
+        mBorderPaint.setPathEffect(
+                new DashPathEffect(
+                        new float[] {style.borderDashWidth, style.borderDashGap}, 0));
+
+        mTextPaint.setColor(style.textColor);
+        mTextPaint.setTextSize(style.textSize);
+        mTextPaint.setTypeface(style.textTypeface);
+        mTextPaint.setAntiAlias(antiAlias);
+
+        mTitlePaint.setColor(style.titleColor);
+        mTitlePaint.setTextSize(style.titleSize);
+        mTitlePaint.setTypeface(style.titleTypeface);
+        mTitlePaint.setAntiAlias(antiAlias);
+
+        onStyleChanged(antiAlias);
+
+        if (textSizeChanged && !mBounds.isEmpty()) {
+            layout();
+        }
+    }
+
+    /** Sets whether the background is left out in ambient mode to light fewer pixels. */
+    void setAmbientBackgroundHidden(boolean hidden) {
+        mAmbientBackgroundHidden = hidden;
+    }
+
+    /** Sets whether images are replaced by their text description to save power. */
+    void setImagesHidden(boolean hidden) {
+        mImagesHidden = hidden;
+    }
+
+    void setBounds(Rect bounds) {
+        if (mBounds.equals(bounds)) {
+            return;
+        }
+        mBounds.set(bounds);
+        if (mStyle != null) {
+            layout();
+        }
+    }
+
+    /**
+     * Takes new data of this renderer's type. Returns false if the data can't be rendered here and
+     * ComplicationDrawable should be used instead.
+     */
+    abstract boolean setComplicationData(Context context, ComplicationData complicationData);
+
+    /**
+     * Returns whether an image the data can't be drawn without failed to load, in which case
+     * ComplicationDrawable should be used instead.
+     */
+    boolean isMissingImage() {
+        return false;
+    }
+
+    void draw(Canvas canvas, long currentTimeMillis) {
+        // Like ComplicationDrawable, leave the background out on burn-in sensitive screens.
+        if (!(mAmbient && (mBurnInProtection || mAmbientBackgroundHidden))) {
+            canvas.drawRoundRect(mBorderRect, mCornerRadius, mCornerRadius, mBackgroundPaint);
+        }
+        if (mStyle.borderWidth > 0) {
+            canvas.drawRoundRect(mBorderRect, mCornerRadius, mCornerRadius, mBorderPaint);
+        }
+        drawContent(canvas, currentTimeMillis);
+    }
+
+    abstract void drawContent(Canvas canvas, long currentTimeMillis);
+
+    /** Called after the paints were updated for a new style or display state. */
+    void onStyleChanged(boolean antiAlias) {}
+
+    /** Called after the shared layout was recomputed for new bounds or text sizes. */
+    void onLayout() {}
+
+    private void layout() {
+        float halfBorder = mStyle.borderWidth / 2f;
+        mBorderRect.set(mBounds);
+        mBorderRect.inset(halfBorder, halfBorder);
+        float maxCornerRadius = Math.min(mBorderRect.width(), mBorderRect.height()) / 2f;
+        mCornerRadius = Math.min(mStyle.borderRadius, maxCornerRadius);
+
+        mContentBounds.set(mBounds);
+        mContentBounds.inset(mStyle.borderWidth, mStyle.borderWidth);
+        mContentClipPath.reset();
+        mContentClipPath.addRoundRect(
+                new RectF(mContentBounds), mCornerRadius, mCornerRadius, Path.Direction.CW);
+
+        mCenterX = mContentBounds.exactCenterX();
+        float centerY = mContentBounds.exactCenterY();
+        mMaxTextWidth = (int) (mContentBounds.width() * TEXT_WIDTH_FRACTION);
+
+        Paint.FontMetrics textMetrics = mTextPaint.getFontMetrics();
+        Paint.FontMetrics titleMetrics = mTitlePaint.getFontMetrics();
+        float textHeight = textMetrics.descent - textMetrics.ascent;
+        float titleHeight = titleMetrics.descent - titleMetrics.ascent;
+
+        // Text alone: vertically centered.
+        mTextBaselineAlone = centerY - (textMetrics.ascent + textMetrics.descent) / 2f;
+
+        // Text with title below it: the pair is centered as a block.
+        float blockTop = centerY - (textHeight + titleHeight) / 2f;
+        mTextBaselineWithTitle = blockTop - textMetrics.ascent;
+        mTitleBaseline = mTextBaselineWithTitle + textMetrics.descent - titleMetrics.ascent;
+
+        // Icon alone: centered.
+        int iconSize = (int) (mContentBounds.width() * ICON_ONLY_SIZE_FRACTION);
+        mIconAloneBounds.set(
+                (int) (mCenterX - iconSize / 2f),
+                (int) (centerY - iconSize / 2f),
+                (int) (mCenterX + iconSize / 2f),
+                (int) (centerY + iconSize / 2f));
+
+        // Icon with text: icon ends at the center line, text starts there.
+        int smallIconSize = (int) (mContentBounds.width() * ICON_WITH_TEXT_SIZE_FRACTION);
+        mIconAboveTextBounds.set(
+                (int) (mCenterX - smallIconSize / 2f),
+                (int) centerY - smallIconSize,
+                (int) (mCenterX + smallIconSize / 2f),
+                (int) centerY);
+        mTextBaselineBelowIcon = centerY - textMetrics.ascent;
+
+        onLayout();
+    }
+
+    /** Draws {@code text} centered on the content, cut to the width available inside the frame. */
+    void drawText(Canvas canvas, CharSequence text, TextPaint paint, float baseline) {
+        if (text == null || text.length() == 0) {
+            return;
+        }
+        if (paint == mTextPaint && GlyphAtlas.canDraw(text, 0, text.length())) {
+            GlyphAtlas atlas = mAmbient ? mAmbientTextAtlas : mInteractiveTextAtlas;
+            if (!atlas.isCurrentFor(paint)) {
+                atlas.build(paint);
+            }
+            if (atlas.measure(text, 0, text.length()) <= mMaxTextWidth) {
+                atlas.drawCentered(canvas, text, 0, text.length(), mCenterX, baseline);
+                return;
+            }
+        }
+        int count = mTextLayoutCache.getVisibleLength(text, paint, mMaxTextWidth);
+        canvas.drawText(text, 0, count, mCenterX, baseline, paint);
+    }
+
+    /** Frees the bitmaps held by this renderer. */
+    void release() {
+        mInteractiveTextAtlas.release();
+        mAmbientTextAtlas.release();
+    }
+
+    static CharSequence getText(Context context, ComplicationText text, long currentTimeMillis) {
+        return text == null ? null : text.getText(context, currentTimeMillis);
+    }
+
+    /** TYPE_SHORT_TEXT: text with an optional title or, if present, an icon above it. */
+    static class ShortText extends LiteComplicationRenderer {
+        private Context mContext;
+        private ComplicationText mText;
+        private ComplicationText mTitle;
+        private final IconHolder mIcon;
+
+        ShortText(TextLayoutCache textLayoutCache, Callback callback) {
+            super(textLayoutCache, callback);
+            mIcon = new IconHolder(callback);
+        }
+
+        @Override
+        boolean setComplicationData(Context context, ComplicationData complicationData) {
+            mContext = context;
+            mText = complicationData.getShortText();
+            mTitle = complicationData.getShortTitle();
+            mIcon.load(
+                    context,
+                    complicationData.getIcon(),
+                    complicationData.getBurnInProtectionIcon());
+            return true;
+        }
+
+        @Override
+        void onStyleChanged(boolean antiAlias) {
+            mIcon.setColor(mStyle.iconColor);
+        }
+
+        @Override
+        void drawContent(Canvas canvas, long currentTimeMillis) {
+            CharSequence text = getText(mContext, mText, currentTimeMillis);
+            if (mIcon.draw(canvas, mIconAboveTextBounds, mAmbient && mBurnInProtection)) {
+                drawText(canvas, text, mTextPaint, mTextBaselineBelowIcon);
+            } else if (mTitle != null) {
+                drawText(canvas, text, mTextPaint, mTextBaselineWithTitle);
+                drawText(
+                        canvas,
+                        getText(mContext, mTitle, currentTimeMillis),
+                        mTitlePaint,
+                        mTitleBaseline);
+            } else {
+                drawText(canvas, text, mTextPaint, mTextBaselineAlone);
+            }
+        }
+    }
+
+    /** TYPE_ICON: a single tinted icon. */
+    static class IconOnly extends LiteComplicationRenderer {
+        private final IconHolder mIcon;
+
+        IconOnly(TextLayoutCache textLayoutCache, Callback callback) {
+            super(textLayoutCache, callback);
+            mIcon = new IconHolder(callback);
+        }
+
+        @Override
+        boolean setComplicationData(Context context, ComplicationData complicationData) {
+            return mIcon.load(
+                    context,
+                    complicationData.getIcon(),
+                    complicationData.getBurnInProtectionIcon());
+        }
+
+        @Override
+        boolean isMissingImage() {
+            return mIcon.isMissing();
+        }
+
+        @Override
+        void onStyleChanged(boolean antiAlias) {
+            mIcon.setColor(mStyle.iconColor);
+        }
+
+        @Override
+        void drawContent(Canvas canvas, long currentTimeMillis) {
+            mIcon.draw(canvas, mIconAloneBounds, mAmbient && mBurnInProtection);
+        }
+    }
+
+    /**
+     * TYPE_SMALL_IMAGE: a photo filling the frame, or an untinted icon-style image. Drawn as its
+     * content description instead while images are hidden.
+     */
+    static class SmallImage extends LiteComplicationRenderer {
+        private Context mContext;
+        private ComplicationText mContentDescription;
+        private final AsyncDrawable mImage;
+        private boolean mPhotoStyle;
+        private final Rect mIconStyleBounds = new Rect();
+
+        SmallImage(TextLayoutCache textLayoutCache, Callback callback) {
+            super(textLayoutCache, callback);
+            mImage = new AsyncDrawable(callback);
+        }
+
+        @Override
+        boolean setComplicationData(Context context, ComplicationData complicationData) {
+            mContext = context;
+            mContentDescription = complicationData.getContentDescription();
+            mPhotoStyle = complicationData.getImageStyle() == ComplicationData.IMAGE_STYLE_PHOTO;
+            return mImage.load(context, complicationData.getSmallImage());
+        }
+
+        @Override
+        boolean isMissingImage() {
+            return mImage.isMissing();
+        }
+
+        @Override
+        void onLayout() {
+            int size = (int) (mContentBounds.width() * IMAGE_ICON_SIZE_FRACTION);
+            mIconStyleBounds.set(
+                    mContentBounds.centerX() - size / 2,
+                    mContentBounds.centerY() - size / 2,
+                    mContentBounds.centerX() + size / 2,
+                    mContentBounds.centerY() + size / 2);
+        }
+
+        @Override
+        void drawContent(Canvas canvas, long currentTimeMillis) {
+            if (mAmbient && (mLowBitAmbient || mBurnInProtection)) {
+                // ComplicationDrawable also hides images on these screens in ambient mode.
+                return;
+            }
+            if (mImagesHidden) {
+                drawText(
+                        canvas,
+                        getText(mContext, mContentDescription, currentTimeMillis),
+                        mTextPaint,
+                        mTextBaselineAlone);
+                return;
+            }
+            Drawable image = mImage.get();
+            if (image == null) {
+                // Still loading.
+                return;
+            }
+            if (mPhotoStyle) {
+                canvas.save();
+                canvas.clipPath(mContentClipPath);
+                image.setBounds(mContentBounds);
+                image.draw(canvas);
+                canvas.restore();
+            } else {
+                image.setBounds(mIconStyleBounds);
+                image.draw(canvas);
+            }
+        }
+    }
+
+    /** TYPE_RANGED_VALUE: a progress ring around an icon or short text. */
+    static class RangedValue extends LiteComplicationRenderer {
+        private static final float START_ANGLE = -90f;
+
+        private Context mContext;
+        private float mProgress;
+        private ComplicationText mText;
+        private ComplicationText mTitle;
+        private final IconHolder mIcon;
+
+        private final RectF mRingRect = new RectF();
+        private final Paint mPrimaryRingPaint = new Paint();
+        private final Paint mSecondaryRingPaint = new Paint();
+
+        // Ring geometry for the current value and bounds. Only rebuilt when either changes, so
+        // frames in between just stroke the cached paths.
+        private final Path mPrimaryArcPath = new Path();
+        private final Path mSecondaryArcPath = new Path();
+        private float mArcProgress = -1;
+        private final RectF mArcRingRect = new RectF();
+        private boolean mDrawPrimaryArc;
+        private boolean mDrawSecondaryArc;
+
+        RangedValue(TextLayoutCache textLayoutCache, Callback callback) {
+            super(textLayoutCache, callback);
+            mIcon = new IconHolder(callback);
+            mPrimaryRingPaint.setStyle(Paint.Style.STROKE);
+            mSecondaryRingPaint.setStyle(Paint.Style.STROKE);
+        }
+
+        @Override
+        boolean setComplicationData(Context context, ComplicationData complicationData) {
+            mContext = context;
+            float range = complicationData.getMaxValue() - complicationData.getMinValue();
+            mProgress =
+                    range <= 0
+                            ? 0
+                            : Math.max(
+                                    0,
+                                    Math.min(
+                                            1,
+                                            (complicationData.getValue()
+                                                            - complicationData.getMinValue())
+                                                    / range));
+            mText = complicationData.getShortText();
+            mTitle = complicationData.getShortTitle();
+            mIcon.load(
+                    context,
+                    complicationData.getIcon(),
+                    complicationData.getBurnInProtectionIcon());
+            updateArcs();
+            return true;
+        }
+
+        @Override
+        void onStyleChanged(boolean antiAlias) {
+            mIcon.setColor(mStyle.iconColor);
+            mPrimaryRingPaint.setColor(mStyle.rangedValuePrimaryColor);
+            mPrimaryRingPaint.setStrokeWidth(mStyle.rangedValueRingWidth);
+            mPrimaryRingPaint.setAntiAlias(antiAlias);
+            mSecondaryRingPaint.setColor(mStyle.rangedValueSecondaryColor);
+            mSecondaryRingPaint.setStrokeWidth(mStyle.rangedValueRingWidth);
+            mSecondaryRingPaint.setAntiAlias(antiAlias);
+            updateArcVisibility();
+        }
+
+        @Override
+        void onLayout() {
+            float inset = mStyle.rangedValueRingWidth * 2f;
+            float size = Math.min(mContentBounds.width(), mContentBounds.height()) - 2 * inset;
+            mRingRect.set(
+                    mContentBounds.exactCenterX() - size / 2f,
+                    mContentBounds.exactCenterY() - size / 2f,
+                    mContentBounds.exactCenterX() + size / 2f,
+                    mContentBounds.exactCenterY() + size / 2f);
+            updateArcs();
+        }
+
+        /* Rebuilds the arc paths if the value or the ring bounds changed since the last build. */
+        private void updateArcs() {
+            if (mArcProgress == mProgress && mArcRingRect.equals(mRingRect)) {
+                return;
+            }
+            mArcProgress = mProgress;
+            mArcRingRect.set(mRingRect);
+
+            float sweep = 360f * mProgress;
+            mPrimaryArcPath.reset();
+            mSecondaryArcPath.reset();
+            if (!mRingRect.isEmpty()) {
+                mPrimaryArcPath.addArc(mRingRect, START_ANGLE, sweep);
+                mSecondaryArcPath.addArc(mRingRect, START_ANGLE + sweep, 360f - sweep);
+            }
+            updateArcVisibility();
+        }
+
+        /* Leaves out arcs that would not show: zero length, or a fully transparent color. */
+        private void updateArcVisibility() {
+            mDrawPrimaryArc = mArcProgress > 0 && Color.alpha(mPrimaryRingPaint.getColor()) != 0;
+            mDrawSecondaryArc =
+                    mArcProgress >= 0
+                            && mArcProgress < 1
+                            && Color.alpha(mSecondaryRingPaint.getColor()) != 0;
+        }
+
+        @Override
+        void drawContent(Canvas canvas, long currentTimeMillis) {
+            if (mDrawPrimaryArc) {
+                canvas.drawPath(mPrimaryArcPath, mPrimaryRingPaint);
+            }
+            if (mDrawSecondaryArc) {
+                canvas.drawPath(mSecondaryArcPath, mSecondaryRingPaint);
+            }
+
+            if (!mIcon.draw(canvas, mIconAloneBounds, mAmbient && mBurnInProtection)) {
+                CharSequence text = getText(mContext, mText, currentTimeMillis);
+                if (mTitle != null) {
+                    drawText(canvas, text, mTextPaint, mTextBaselineWithTitle);
+                    drawText(
+                            canvas,
+                            getText(mContext, mTitle, currentTimeMillis),
+                            mTitlePaint,
+                            mTitleBaseline);
+                } else {
+                    drawText(canvas, text, mTextPaint, mTextBaselineAlone);
+                }
+            }
+        }
+    }
+
+    /** An icon and its optional burn-in protection variant, tinted with the style's icon color. */
+    static class IconHolder {
+        private final AsyncDrawable mIcon;
+        private final AsyncDrawable mBurnInProtectionIcon;
+
+        IconHolder(Callback callback) {
+            mIcon = new AsyncDrawable(callback);
+            mBurnInProtectionIcon = new AsyncDrawable(callback);
+        }
+
+        /** Starts loading the icons; returns whether there is an icon to draw. */
+        boolean load(Context context, Icon icon, Icon burnInProtectionIcon) {
+            mBurnInProtectionIcon.load(context, burnInProtectionIcon);
+            return mIcon.load(context, icon);
+        }
+
+        /** Returns whether the icon failed to load. */
+        boolean isMissing() {
+            return mIcon.isMissing();
+        }
+
+        void setColor(int color) {
+            mIcon.setTint(color);
+            mBurnInProtectionIcon.setTint(color);
+        }
+
+        /** Draws the icon into {@code bounds}; returns false if there is no icon (yet). */
+        boolean draw(Canvas canvas, Rect bounds, boolean burnInProtection) {
+            Drawable icon = burnInProtection ? mBurnInProtectionIcon.get() : null;
+            if (icon == null) {
+                icon = mIcon.get();
+            }
+            if (icon == null) {
+                return false;
+            }
+            icon.setBounds(bounds);
+            icon.draw(canvas);
+            return true;
+        }
+    }
+
+    /**
+     * An image loaded with {@link Icon#loadDrawableAsync}. The load completes on the thread that
+     * started it and only publishes the drawable; the drawing thread picks it up in {@link #get},
+     * so the renderer itself is never changed outside a draw. The previous image is drawn until
+     * the next one arrives, and loads overtaken by a newer one are dropped.
+     */
+    static class AsyncDrawable {
+        private final Callback mCallback;
+
+        // Incremented by each load(), on the thread that sets the complication data.
+        private int mLoadCount;
+
+        private volatile Drawable mLoaded;
+        private volatile boolean mMissing;
+
+        private Drawable mDrawable;
+        private int mTint;
+        private boolean mTinted;
+
+        AsyncDrawable(Callback callback) {
+            mCallback = callback;
+        }
+
+        /** Starts loading {@code icon}; returns false if there is none. */
+        boolean load(Context context, Icon icon) {
+            final int load = ++mLoadCount;
+            mMissing = false;
+            if (icon == null) {
+                mLoaded = null;
+                return false;
+            }
+            icon.loadDrawableAsync(
+                    context,
+                    new Icon.OnDrawableLoadedListener() {
+                        @Override
+                        public void onDrawableLoaded(Drawable drawable) {
+                            if (load != mLoadCount) {
+                                return;
+                            }
+                            mLoaded = drawable;
+                            mMissing = drawable == null;
+                            mCallback.onImageLoaded();
+                        }
+                    },
+                    new Handler());
+            return true;
+        }
+
+        /** Returns whether the last load finished without a drawable. */
+        boolean isMissing() {
+            return mMissing;
+        }
+
+        void setTint(int color) {
+            mTint = color;
+            mTinted = true;
+            if (mDrawable != null) {
+                mDrawable.setTint(color);
+            }
+        }
+
+        /** Returns the latest loaded drawable, or null if none has arrived. */
+        Drawable get() {
+            Drawable loaded = mLoaded;
+            if (loaded != mDrawable) {
+                mDrawable = loaded;
+                if (loaded != null && mTinted) {
+                    loaded.setTint(mTint);
+                }
+            }
+            return mDrawable;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.wearable.complications;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Color;
+import android.graphics.Typeface;
+
+/**
+ * Style values used by {@link LiteComplicationRenderer}, mirroring
+ * drawable/custom_complication_styles.xml. Sizes come from the same dimension resources the XML
+ * uses; colors from the same color resources.
+ */
+final class LiteComplicationStyle {
+
+    final int backgroundColor;
+    final int borderColor;
+    final int borderWidth;
+    final int borderRadius;
+    final int borderDashWidth;
+    final int borderDashGap;
+    final int iconColor;
+    final int rangedValueRingWidth;
+    final int rangedValuePrimaryColor;
+    final int rangedValueSecondaryColor;
+    final int textColor;
+    final int textSize;
+    final Typeface textTypeface;
+    final int titleColor;
+    final int titleSize;
+    final Typeface titleTypeface;
+
+    private LiteComplicationStyle(
+            Context context,
+            int borderColor,
+            int iconColor,
+            int rangedValuePrimaryColor,
+            int rangedValueSecondaryColor,
+            int titleColor) {
+        Resources resources = context.getResources();
+
+        this.backgroundColor = Color.BLACK;
+        this.borderColor = borderColor;
+        this.borderWidth = resources.getDimensionPixelSize(R.dimen.complication_border_width);
+        this.borderRadius = resources.getDimensionPixelSize(R.dimen.complication_border_radius);
+        this.borderDashWidth =
+                resources.getDimensionPixelSize(R.dimen.complication_border_dash_width);
+        this.borderDashGap = resources.getDimensionPixelSize(R.dimen.complication_border_dash_gap);
+        this.iconColor = iconColor;
+        this.rangedValueRingWidth =
+                resources.getDimensionPixelSize(R.dimen.complication_ranged_value_ring_width);
+        this.rangedValuePrimaryColor = rangedValuePrimaryColor;
+        this.rangedValueSecondaryColor = rangedValueSecondaryColor;
+        this.textColor = context.getColor(R.color.white);
+        this.textSize = resources.getDimensionPixelSize(R.dimen.complication_text_size);
+        this.textTypeface = Typeface.create("sans-serif-condensed", Typeface.NORMAL);
+        this.titleColor = titleColor;
+        this.titleSize = resources.getDimensionPixelSize(R.dimen.complication_title_size);
+        this.titleTypeface = Typeface.create("sans-serif", Typeface.NORMAL);
+    }
+
+    /** The interactive style. */
+    static LiteComplicationStyle createActive(Context context) {
+        return new LiteComplicationStyle(
+                context,
+                context.getColor(R.color.white),
+                context.getColor(R.color.dark_blue),
+                context.getColor(R.color.teal),
+                context.getColor(R.color.white),
+                context.getColor(R.color.gray));
+    }
+
+    /** The ambient style: the interactive style with the XML's {@code <ambient>} overrides. */
+    static LiteComplicationStyle createAmbient(Context context) {
+        return new LiteComplicationStyle(
+                context,
+                Color.TRANSPARENT,
+                context.getColor(R.color.white),
+                context.getColor(R.color.white),
+                Color.TRANSPARENT,
+                context.getColor(R.color.white));
+    }
+}
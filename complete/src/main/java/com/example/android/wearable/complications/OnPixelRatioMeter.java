@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.wearable.complications;
+
+import android.graphics.Bitmap;
+
+/**
+ * Measures the share of lit pixels in a rendered frame, which is what an OLED screen's power draw
+ * scales with.
+ *
+ * <p>Only every {@code sampleStep}-th pixel of every {@code sampleStep}-th row is read, one row at
+ * a time into a reused buffer, so measuring a frame neither allocates nor touches most of it.
+ */
+final class OnPixelRatioMeter {
+
+    // A pixel counts as lit if any channel is above this; darker pixels draw next to nothing.
+    private static final int LIT_CHANNEL_THRESHOLD = 0x10;
+
+    private final int mSampleStep;
+    private int[] mRowPixels;
+
+    OnPixelRatioMeter(int sampleStep) {
+        mSampleStep = sampleStep;
+    }
+
+    /** Returns the share of sampled pixels of {@code bitmap} that are lit, from 0 to 1. */
+    float measure(Bitmap bitmap) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        if (mRowPixels == null || mRowPixels.length < width) {
+            mRowPixels = new int[width];
+        }
+
+        int litCount = 0;
+        int sampleCount = 0;
+        for (int y = 0; y < height; y += mSampleStep) {
+            bitmap.getPixels(mRowPixels, 0, width, 0, y, width, 1);
+            for (int x = 0; x < width; x += mSampleStep) {
+                int pixel = mRowPixels[x];
+                if (((pixel >> 16) & 0xff) > LIT_CHANNEL_THRESHOLD
+                        || ((pixel >> 8) & 0xff) > LIT_CHANNEL_THRESHOLD
+                        || (pixel & 0xff) > LIT_CHANNEL_THRESHOLD) {
+                    litCount++;
+                }
+                sampleCount++;
+            }
+        }
+        return sampleCount == 0 ? 0 : litCount / (float) sampleCount;
+    }
+}
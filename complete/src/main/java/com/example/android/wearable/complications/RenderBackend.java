@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.wearable.complications;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Picture;
+import android.os.Build;
+import android.view.SurfaceHolder;
+
+/**
+ * Supplies the canvas a frame is drawn on and composites the watch face's layers onto it.
+ *
+ * <p>{@link #SOFTWARE} is the classic locked software canvas used by CanvasWatchFaceService.
+ * {@link #HARDWARE} draws through a hardware-accelerated canvas, where blitting the cached layers
+ * is done by the GPU. Both composite the same {@link RenderPipeline} with the same paints, so
+ * their output is pixel-comparable apart from bitmap filtering of the rotated hands, which
+ * {@link #hardwareMatchesSoftware} checks before a watch face switches to {@link #HARDWARE}.
+ */
+abstract class RenderBackend {
+
+    /*
+     * How far the hardware output may stray from the software output: the share of pixels allowed
+     * to differ, and the difference per color channel that still counts as the same pixel.
+     */
+    private static final float MAX_DIFFERENT_PIXEL_FRACTION = 0.01f;
+    private static final int CHANNEL_TOLERANCE = 8;
+
+    static final RenderBackend SOFTWARE =
+            new RenderBackend() {
+                @Override
+                boolean isHardwareAccelerated() {
+                    return false;
+                }
+
+                @Override
+                Canvas lockCanvas(SurfaceHolder holder) {
+                    return holder.lockCanvas();
+                }
+
+                @Override
+                void unlockCanvasAndPost(SurfaceHolder holder, Canvas canvas) {
+                    holder.unlockCanvasAndPost(canvas);
+                }
+            };
+
+    static final RenderBackend HARDWARE =
+            new RenderBackend() {
+                @Override
+                boolean isHardwareAccelerated() {
+                    return true;
+                }
+
+                @Override
+                Canvas lockCanvas(SurfaceHolder holder) {
+                    return holder.getSurface().lockHardwareCanvas();
+                }
+
+                @Override
+                void unlockCanvasAndPost(SurfaceHolder holder, Canvas canvas) {
+                    holder.getSurface().unlockCanvasAndPost(canvas);
+                }
+            };
+
+    abstract boolean isHardwareAccelerated();
+
+    /**
+     * Locks the whole surface for drawing. Returns null if the surface is not ready; throws if the
+     * backend cannot draw to this surface at all.
+     */
+    abstract Canvas lockCanvas(SurfaceHolder holder);
+
+    abstract void unlockCanvasAndPost(SurfaceHolder holder, Canvas canvas);
+
+    /** Composites a complete frame of {@code pipeline} onto {@code canvas}. */
+    void drawFrame(Canvas canvas, RenderPipeline pipeline, long currentTimeMillis) {
+        pipeline.draw(canvas, currentTimeMillis);
+    }
+
+    /**
+     * Plays {@code frame} back on a software canvas and on a hardware canvas and returns whether
+     * the two renders match. Reading back a hardware render needs API 28, so earlier releases
+     * always return true.
+     */
+    static boolean hardwareMatchesSoftware(Picture frame) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.P) {
+            return true;
+        }
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+
+        Bitmap software = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        new Canvas(software).drawPicture(frame);
+        Bitmap hardware = Bitmap.createBitmap(frame);
+        Bitmap hardwareCopy = hardware.copy(Bitmap.Config.ARGB_8888, false);
+        hardware.recycle();
+
+        int[] softwarePixels = new int[width * height];
+        int[] hardwarePixels = new int[width * height];
+        software.getPixels(softwarePixels, 0, width, 0, 0, width, height);
+        hardwareCopy.getPixels(hardwarePixels, 0, width, 0, 0, width, height);
+        software.recycle();
+        hardwareCopy.recycle();
+
+        int differentPixels =
+                countDifferentPixels(softwarePixels, hardwarePixels, CHANNEL_TOLERANCE);
+        return differentPixels <= softwarePixels.length * MAX_DIFFERENT_PIXEL_FRACTION;
+    }
+
+    /**
+     * Returns how many of the ARGB pixels in {@code a} and {@code b} differ by more than {@code
+     * tolerance} in any channel.
+     */
+    static int countDifferentPixels(int[] a, int[] b, int tolerance) {
+        int count = 0;
+        for (int i = 0; i < a.length; i++) {
+            int pixelA = a[i];
+            int pixelB = b[i];
+            if (pixelA == pixelB) {
+                continue;
+            }
+            for (int shift = 0; shift < 32; shift += 8) {
+                int channelA = (pixelA >>> shift) & 0xff;
+                int channelB = (pixelB >>> shift) & 0xff;
+                if (Math.abs(channelA - channelB) > tolerance) {
+                    count++;
+                    break;
+                }
+            }
+        }
+        return count;
+    }
+}
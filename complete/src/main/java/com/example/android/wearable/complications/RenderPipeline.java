@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.wearable.complications;
+
+import android.graphics.Canvas;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The elements of a frame as an ordered list of {@link Stage}s, each of which only does its
+ * expensive work when it has to.
+ *
+ * <p>A stage splits its work in two: {@link Stage#render} brings whatever the stage caches up to
+ * date, {@link Stage#draw} composites that cache onto the frame. Every frame draws every stage,
+ * but a stage is only rendered again when its cadence says the time it shows has moved on, or
+ * when one of the inputs it declares has been marked dirty with {@link #invalidate}. A new dial
+ * element is added as one more stage with its own cadence and inputs, instead of being drawn from
+ * scratch in every frame.
+ */
+final class RenderPipeline {
+
+    /** Rendered once per surface: only when the surface or a declared input changes. */
+    static final int CADENCE_SURFACE = 0;
+
+    /** Rendered when complication data changes, in addition to the declared inputs. */
+    static final int CADENCE_DATA_CHANGE = 1;
+
+    /** Rendered once per minute of the frame time. */
+    static final int CADENCE_MINUTE = 2;
+
+    /** Rendered once per second of the frame time. */
+    static final int CADENCE_SECOND = 3;
+
+    /** Rendered in every frame. */
+    static final int CADENCE_FRAME = 4;
+
+    // Inputs a stage's render can depend on, combined as a bit mask.
+
+    /** Surface size and screen properties. Every stage depends on them. */
+    static final int INPUT_SURFACE = 1;
+    /** Ambient or interactive mode. */
+    static final int INPUT_MODE = 1 << 1;
+    /** Paints and content chosen by the battery tier, pixel budget or background photo. */
+    static final int INPUT_STYLE = 1 << 2;
+    static final int INPUT_COMPLICATION_DATA = 1 << 3;
+    static final int INPUT_TIME_ZONE = 1 << 4;
+
+    /** One element of the frame, such as the dial or the hands. */
+    abstract static class Stage {
+        private final String mName;
+        private final int mCadence;
+        private final int mInputs;
+
+        private boolean mDirty = true;
+        // Time period, as returned by getPeriod(), of the last render.
+        private long mRenderedPeriod;
+        private int mRenderCount;
+
+        /**
+         * @param inputs INPUT_ constants of everything other than the time that the render
+         *     depends on
+         */
+        Stage(String name, int cadence, int inputs) {
+            mName = name;
+            mCadence = cadence;
+            mInputs =
+                    inputs
+                            | INPUT_SURFACE
+                            | (cadence == CADENCE_DATA_CHANGE ? INPUT_COMPLICATION_DATA : 0);
+        }
+
+        /** Brings the stage's cached output up to date for {@code currentTimeMillis}. */
+        abstract void render(long currentTimeMillis);
+
+        /** Composites the stage's cached output onto {@code canvas}. */
+        abstract void draw(Canvas canvas);
+
+        /* Returns the period of the cadence that currentTimeMillis falls in. */
+        private long getPeriod(long currentTimeMillis) {
+            switch (mCadence) {
+                case CADENCE_MINUTE:
+                    return TimeUnit.MILLISECONDS.toMinutes(currentTimeMillis);
+                case CADENCE_SECOND:
+                    return TimeUnit.MILLISECONDS.toSeconds(currentTimeMillis);
+                case CADENCE_FRAME:
+                    return currentTimeMillis;
+                default:
+                    return 0;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return mName + "[renders=" + mRenderCount + "]";
+        }
+    }
+
+    private final ArrayList<Stage> mStages = new ArrayList<>();
+    private int mFrameCount;
+
+    /** Appends {@code stage}, which is drawn on top of the stages added before it. */
+    void addStage(Stage stage) {
+        mStages.add(stage);
+    }
+
+    /** Marks {@code inputs} as changed, so the stages that depend on them render again. */
+    void invalidate(int inputs) {
+        for (int i = 0; i < mStages.size(); i++) {
+            Stage stage = mStages.get(i);
+            if ((stage.mInputs & inputs) != 0) {
+                stage.mDirty = true;
+            }
+        }
+    }
+
+    /**
+     * Draws a frame for {@code currentTimeMillis}, rendering only the stages that are dirty or
+     * whose cadence period has changed and compositing the others from their cache.
+     */
+    void draw(Canvas canvas, long currentTimeMillis) {
+        mFrameCount++;
+        for (int i = 0; i < mStages.size(); i++) {
+            Stage stage = mStages.get(i);
+            long period = stage.getPeriod(currentTimeMillis);
+            if (stage.mDirty
+                    || stage.mCadence == CADENCE_FRAME
+                    || stage.mRenderedPeriod != period) {
+                stage.render(currentTimeMillis);
+                stage.mDirty = false;
+                stage.mRenderedPeriod = period;
+                stage.mRenderCount++;
+            }
+            stage.draw(canvas);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RenderPipeline[frames=" + mFrameCount + ", stages=" + mStages + "]";
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.wearable.complications;
+
+import android.graphics.Typeface;
+import android.text.TextPaint;
+import android.util.LruCache;
+
+import java.util.Locale;
+
+/**
+ * Per-slot cache of how much of a complication text fits on one line.
+ *
+ * <p>Keyed on the resolved text, the text size and typeface it is drawn with, and the width
+ * available in the slot, so a text like "Mon 17" or "72&deg;" is only measured and broken the
+ * first time it is drawn in a given style and slot size. Least recently used entries are evicted
+ * once the cache holds {@link #MAX_ENTRIES}.
+ */
+class TextLayoutCache {
+
+    static final int MAX_ENTRIES = 16;
+
+    private final LruCache<Key, Integer> mCache = new LruCache<>(MAX_ENTRIES);
+
+    // Reused for lookups so hits don't allocate; a copy is stored on a miss.
+    private final Key mLookupKey = new Key();
+
+    /**
+     * Returns how many leading characters of {@code text} fit in {@code maxWidth} when drawn with
+     * {@code paint}.
+     */
+    int getVisibleLength(CharSequence text, TextPaint paint, int maxWidth) {
+        mLookupKey.set(text, paint.getTextSize(), paint.getTypeface(), maxWidth);
+        Integer visibleLength = mCache.get(mLookupKey);
+        if (visibleLength == null) {
+            visibleLength = paint.breakText(text, 0, text.length(), true, maxWidth, null);
+            Key key = new Key();
+            key.set(text.toString(), paint.getTextSize(), paint.getTypeface(), maxWidth);
+            mCache.put(key, visibleLength);
+        }
+        return visibleLength;
+    }
+
+    int getHitCount() {
+        return mCache.hitCount();
+    }
+
+    int getMissCount() {
+        return mCache.missCount();
+    }
+
+    /** Returns the share of lookups served from the cache, from 0 to 1. */
+    float getHitRate() {
+        int lookups = getHitCount() + getMissCount();
+        return lookups == 0 ? 0 : getHitCount() / (float) lookups;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                Locale.US,
+                "TextLayoutCache[size=%d, hits=%d, misses=%d, hitRate=%.0f%%]",
+                mCache.size(),
+                getHitCount(),
+                getMissCount(),
+                getHitRate() * 100);
+    }
+
+    private static final class Key {
+        private CharSequence mText;
+        private float mTextSize;
+        private Typeface mTypeface;
+        private int mMaxWidth;
+        private int mHashCode;
+
+        void set(CharSequence text, float textSize, Typeface typeface, int maxWidth) {
+            mText = text;
+            mTextSize = textSize;
+            mTypeface = typeface;
+            mMaxWidth = maxWidth;
+
+            // Hashed by content rather than with text.hashCode(), which isn't content-based for
+            // every CharSequence.
+            int hashCode = 0;
+            for (int i = 0; i < text.length(); i++) {
+                hashCode = 31 * hashCode + text.charAt(i);
+            }
+            hashCode = 31 * hashCode + Float.floatToIntBits(textSize);
+            hashCode = 31 * hashCode + (typeface == null ? 0 : typeface.hashCode());
+            mHashCode = 31 * hashCode + maxWidth;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            if (mHashCode != other.mHashCode
+                    || mTextSize != other.mTextSize
+                    || mTypeface != other.mTypeface
+                    || mMaxWidth != other.mMaxWidth
+                    || mText.length() != other.mText.length()) {
+                return false;
+            }
+            for (int i = 0; i < mText.length(); i++) {
+                if (mText.charAt(i) != other.mText.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return mHashCode;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.wearable.complications;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+
+/**
+ * Scales the watch face's work back as the device heats up, so it doesn't add to the load of a
+ * device that is already throttling, e.g. during a GPS workout.
+ *
+ * <p>The thermal status comes from a {@link ThermalStatusSource}, so any status can be reached
+ * with a fake source. The statuses follow the first levels of the platform's thermal status:
+ * <ul>
+ *   <li>{@link #STATUS_LIGHT}: the interactive frame rate is capped.
+ *   <li>{@link #STATUS_MODERATE}: the frame rate is capped lower, time-dependent complication
+ *       text is only re-rendered once a minute, and the other mode's layers aren't kept warm.
+ *   <li>{@link #STATUS_SEVERE}: the second hand ticks once a second and complications are drawn
+ *       from their cached layers as they are, even if stale, until the device cools down.
+ * </ul>
+ */
+final class ThermalGovernor {
+
+    static final int STATUS_NONE = 0;
+    static final int STATUS_LIGHT = 1;
+    static final int STATUS_MODERATE = 2;
+    static final int STATUS_SEVERE = 3;
+
+    static final int LIGHT_MAX_FRAMES_PER_SECOND = 15;
+    static final int MODERATE_MAX_FRAMES_PER_SECOND = 5;
+    static final int SEVERE_MAX_FRAMES_PER_SECOND = 1;
+
+    /** Thermal status of the device. */
+    interface ThermalStatusSource {
+
+        /** Receives a call whenever the reported status may have changed. */
+        interface Listener {
+            void onThermalStatusChanged();
+        }
+
+        /** Returns one of the STATUS_ constants. */
+        int getThermalStatus();
+
+        /** Starts reporting changes to {@code listener}, or stops if it is null. */
+        void setListener(Listener listener);
+    }
+
+    private ThermalGovernor() {}
+
+    /** Returns the highest interactive frame rate allowed at {@code status}. */
+    static int getMaxFramesPerSecond(int status) {
+        switch (status) {
+            case STATUS_SEVERE:
+                return SEVERE_MAX_FRAMES_PER_SECOND;
+            case STATUS_MODERATE:
+                return MODERATE_MAX_FRAMES_PER_SECOND;
+            case STATUS_LIGHT:
+                return LIGHT_MAX_FRAMES_PER_SECOND;
+            default:
+                return FrameRatePolicy.VSYNC_FRAMES_PER_SECOND;
+        }
+    }
+
+    /** Returns whether complication work that can wait should be deferred at {@code status}. */
+    static boolean defersComplicationWork(int status) {
+        return status >= STATUS_MODERATE;
+    }
+
+    /** Returns whether complications should only be drawn from their cached layers. */
+    static boolean freezesComplicationLayers(int status) {
+        return status >= STATUS_SEVERE;
+    }
+
+    /**
+     * Derives the thermal status from the battery temperature, which every device reports in its
+     * sticky battery broadcast and which follows the skin temperature of a watch closely. Each
+     * status is left again only once the temperature is a degree below where it was entered.
+     */
+    static final class BatteryTemperatureSource implements ThermalStatusSource {
+        // Temperatures, in tenths of a degree Celsius, at which each status after NONE starts.
+        private static final int[] STATUS_TEMPERATURES = {390, 420, 450};
+        private static final int HYSTERESIS = 10;
+
+        private final Context mContext;
+
+        private int mStatus = STATUS_NONE;
+        private Listener mListener;
+
+        private final BroadcastReceiver mReceiver =
+                new BroadcastReceiver() {
+                    @Override
+                    public void onReceive(Context context, Intent intent) {
+                        if (readTemperature(intent) && mListener != null) {
+                            mListener.onThermalStatusChanged();
+                        }
+                    }
+                };
+
+        BatteryTemperatureSource(Context context) {
+            mContext = context;
+        }
+
+        @Override
+        public int getThermalStatus() {
+            return mStatus;
+        }
+
+        @Override
+        public void setListener(Listener listener) {
+            if (listener != null && mListener == null) {
+                Intent batteryIntent =
+                        mContext.registerReceiver(
+                                mReceiver, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+                if (batteryIntent != null) {
+                    readTemperature(batteryIntent);
+                }
+            } else if (listener == null && mListener != null) {
+                mContext.unregisterReceiver(mReceiver);
+            }
+            mListener = listener;
+        }
+
+        /* Updates mStatus from the battery broadcast. Returns true if it changed. */
+        private boolean readTemperature(Intent intent) {
+            // Below freezing the temperature is negative, so absence needs its own marker.
+            int temperature =
+                    intent.getIntExtra(BatteryManager.EXTRA_TEMPERATURE, Integer.MIN_VALUE);
+            return temperature != Integer.MIN_VALUE && onTemperature(temperature);
+        }
+
+        /* Updates mStatus for a battery temperature. Returns true if it changed. */
+        private boolean onTemperature(int temperature) {
+            int status = nextStatus(mStatus, temperature);
+            if (status == mStatus) {
+                return false;
+            }
+            mStatus = status;
+            return true;
+        }
+
+        /**
+         * Returns the status that follows {@code status} at a battery temperature in tenths of a
+         * degree Celsius.
+         */
+        static int nextStatus(int status, int temperature) {
+            while (status < STATUS_SEVERE && temperature >= STATUS_TEMPERATURES[status]) {
+                status++;
+            }
+            while (status > STATUS_NONE
+                    && temperature < STATUS_TEMPERATURES[status - 1] - HYSTERESIS) {
+                status--;
+            }
+            return status;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.wearable.complications;
+
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lightweight replacement for {@link java.util.Calendar} in the draw loop.
+ *
+ * <p>Splits epoch millis into local hour, minute, second and millisecond with plain integer
+ * arithmetic on top of a cached time zone offset, and derives the hand angles from them. Only
+ * primitive fields are touched after construction, so {@link #setTimeInMillis(long)} and the
+ * getters never allocate.
+ *
+ * <p>The zone offset is cached for the current quarter hour (daylight saving transitions always
+ * fall on a quarter hour boundary) and dropped whenever {@link #setTimeZone(TimeZone)} is called,
+ * e.g. from the watch face's time zone receiver.
+ */
+final class WallClock {
+
+    private static final long SECOND_MS = TimeUnit.SECONDS.toMillis(1);
+    private static final long MINUTE_MS = TimeUnit.MINUTES.toMillis(1);
+    private static final long HOUR_MS = TimeUnit.HOURS.toMillis(1);
+    private static final long DAY_MS = TimeUnit.DAYS.toMillis(1);
+    private static final long OFFSET_CACHE_MS = TimeUnit.MINUTES.toMillis(15);
+
+    private TimeZone mTimeZone;
+
+    private int mZoneOffsetMs;
+    private long mOffsetValidFromMs = Long.MAX_VALUE;
+    private long mOffsetValidUntilMs = Long.MIN_VALUE;
+
+    private long mTimeInMillis;
+    private int mHour;
+    private int mMinute;
+    private int mSecond;
+    private int mMillisecond;
+
+    WallClock(TimeZone timeZone) {
+        mTimeZone = timeZone;
+    }
+
+    /** Switches to a new time zone and drops the cached offset. */
+    void setTimeZone(TimeZone timeZone) {
+        mTimeZone = timeZone;
+        mOffsetValidFromMs = Long.MAX_VALUE;
+        mOffsetValidUntilMs = Long.MIN_VALUE;
+    }
+
+    void setTimeInMillis(long timeInMillis) {
+        mTimeInMillis = timeInMillis;
+
+        if (timeInMillis < mOffsetValidFromMs || timeInMillis >= mOffsetValidUntilMs) {
+            mZoneOffsetMs = mTimeZone.getOffset(timeInMillis);
+            mOffsetValidFromMs = timeInMillis - floorMod(timeInMillis, OFFSET_CACHE_MS);
+            mOffsetValidUntilMs = mOffsetValidFromMs + OFFSET_CACHE_MS;
+        }
+
+        long millisOfDay = floorMod(timeInMillis + mZoneOffsetMs, DAY_MS);
+        mHour = (int) (millisOfDay / HOUR_MS);
+        mMinute = (int) (millisOfDay % HOUR_MS / MINUTE_MS);
+        mSecond = (int) (millisOfDay % MINUTE_MS / SECOND_MS);
+        mMillisecond = (int) (millisOfDay % SECOND_MS);
+    }
+
+    long getTimeInMillis() {
+        return mTimeInMillis;
+    }
+
+    /** Hour of the day, 0-23. */
+    int getHour() {
+        return mHour;
+    }
+
+    int getMinute() {
+        return mMinute;
+    }
+
+    int getSecond() {
+        return mSecond;
+    }
+
+    int getMillisecond() {
+        return mMillisecond;
+    }
+
+    /*
+     * These calculations reflect the rotation in degrees per unit of time, e.g.,
+     * 360 / 60 = 6 and 360 / 12 = 30.
+     */
+
+    float getSecondsRotation() {
+        return (mSecond + mMillisecond / 1000f) * 6f;
+    }
+
+    float getMinutesRotation() {
+        return mMinute * 6f;
+    }
+
+    float getHoursRotation() {
+        return ((mHour % 12) * 30) + (mMinute / 2f);
+    }
+
+    private static long floorMod(long x, long y) {
+        long mod = x % y;
+        return mod < 0 ? mod + y : mod;
+    }
+}
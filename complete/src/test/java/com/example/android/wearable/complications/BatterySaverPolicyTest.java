@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.wearable.complications;
+
+import static com.example.android.wearable.complications.BatterySaverPolicy.TIER_FULL;
+import static com.example.android.wearable.complications.BatterySaverPolicy.TIER_REDUCED;
+import static com.example.android.wearable.complications.BatterySaverPolicy.TIER_SAVER;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class BatterySaverPolicyTest {
+
+    @Test
+    public void fullBatteryIsTheFullTier() {
+        assertEquals(TIER_FULL, BatterySaverPolicy.getTier(source(100, false, false)));
+        assertEquals(TIER_FULL, BatterySaverPolicy.getTier(source(31, false, false)));
+    }
+
+    @Test
+    public void reducedTierStartsAtThirtyPercent() {
+        assertEquals(TIER_REDUCED, BatterySaverPolicy.getTier(source(30, false, false)));
+        assertEquals(TIER_REDUCED, BatterySaverPolicy.getTier(source(16, false, false)));
+    }
+
+    @Test
+    public void saverTierStartsAtFifteenPercent() {
+        assertEquals(TIER_SAVER, BatterySaverPolicy.getTier(source(15, false, false)));
+        assertEquals(TIER_SAVER, BatterySaverPolicy.getTier(source(0, false, false)));
+    }
+
+    @Test
+    public void powerSaveModeIsTheSaverTierAtAnyLevel() {
+        assertEquals(TIER_SAVER, BatterySaverPolicy.getTier(source(100, false, true)));
+        assertEquals(TIER_SAVER, BatterySaverPolicy.getTier(source(25, false, true)));
+    }
+
+    @Test
+    public void chargingIsTheFullTierAtAnyLevel() {
+        assertEquals(TIER_FULL, BatterySaverPolicy.getTier(source(5, true, false)));
+        assertEquals(TIER_FULL, BatterySaverPolicy.getTier(source(25, true, false)));
+        assertEquals(TIER_FULL, BatterySaverPolicy.getTier(source(50, true, true)));
+    }
+
+    @Test
+    public void tiersCapTheFrameRate() {
+        assertEquals(
+                FrameRatePolicy.VSYNC_FRAMES_PER_SECOND,
+                BatterySaverPolicy.getMaxFramesPerSecond(TIER_FULL));
+        assertEquals(
+                BatterySaverPolicy.REDUCED_MAX_FRAMES_PER_SECOND,
+                BatterySaverPolicy.getMaxFramesPerSecond(TIER_REDUCED));
+        assertEquals(
+                BatterySaverPolicy.SAVER_MAX_FRAMES_PER_SECOND,
+                BatterySaverPolicy.getMaxFramesPerSecond(TIER_SAVER));
+    }
+
+    /* A source that reports fixed values, as the engine can be handed instead of the system's. */
+    private static BatterySaverPolicy.PowerStateSource source(
+            final int batteryPercent, final boolean charging, final boolean powerSaveMode) {
+        return new BatterySaverPolicy.PowerStateSource() {
+            @Override
+            public int getBatteryPercent() {
+                return batteryPercent;
+            }
+
+            @Override
+            public boolean isCharging() {
+                return charging;
+            }
+
+            @Override
+            public boolean isPowerSaveMode() {
+                return powerSaveMode;
+            }
+
+            @Override
+            public void setListener(Listener listener) {}
+        };
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.wearable.complications;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class FrameRatePolicyTest {
+
+    private static final long BUDGET_US_PER_MINUTE = TimeUnit.SECONDS.toMicros(3);
+
+    private static final long MINUTE_MS = TimeUnit.MINUTES.toMillis(1);
+
+    @Test
+    public void startsAtThePreferredRate() {
+        FrameRatePolicy policy = new FrameRatePolicy(30, BUDGET_US_PER_MINUTE);
+
+        assertEquals(30, policy.getFramesPerSecond());
+        assertFalse(policy.isVsyncDriven());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnsupportedRates() {
+        new FrameRatePolicy(24, BUDGET_US_PER_MINUTE);
+    }
+
+    @Test
+    public void stepsDownAsSoonAsTheBudgetIsExceeded() {
+        FrameRatePolicy policy = new FrameRatePolicy(30, BUDGET_US_PER_MINUTE);
+
+        assertFalse(policy.onFrameDrawn(0, BUDGET_US_PER_MINUTE));
+        assertTrue(policy.onFrameDrawn(1, 1));
+
+        assertEquals(15, policy.getFramesPerSecond());
+    }
+
+    @Test
+    public void countsSubMillisecondFrames() {
+        FrameRatePolicy policy = new FrameRatePolicy(30, BUDGET_US_PER_MINUTE);
+
+        // 2000 frames of 1.6 ms, within half a minute, are over the 3 s budget.
+        boolean changed = false;
+        for (int frame = 0; frame < 2000 && !changed; frame++) {
+            changed = policy.onFrameDrawn(frame * 15, 1600);
+        }
+
+        assertTrue(changed);
+        assertEquals(15, policy.getFramesPerSecond());
+    }
+
+    @Test
+    public void doesNotStepBelowTheLowestRate() {
+        FrameRatePolicy policy = new FrameRatePolicy(1, BUDGET_US_PER_MINUTE);
+
+        assertFalse(policy.onFrameDrawn(0, BUDGET_US_PER_MINUTE + 1));
+
+        assertEquals(1, policy.getFramesPerSecond());
+    }
+
+    @Test
+    public void stepsBackUpAfterACheapWindow() {
+        FrameRatePolicy policy = new FrameRatePolicy(30, BUDGET_US_PER_MINUTE);
+        policy.onFrameDrawn(0, BUDGET_US_PER_MINUTE + 1);
+        assertEquals(15, policy.getFramesPerSecond());
+
+        // At double the rate, 1 s becomes 2 s, within three quarters of the budget.
+        assertFalse(policy.onFrameDrawn(0, TimeUnit.SECONDS.toMicros(1)));
+        assertTrue(policy.onFrameDrawn(MINUTE_MS, 0));
+
+        assertEquals(30, policy.getFramesPerSecond());
+    }
+
+    @Test
+    public void staysDownWhenTheHigherRateWouldNearlyFillTheBudget() {
+        FrameRatePolicy policy = new FrameRatePolicy(30, BUDGET_US_PER_MINUTE);
+        policy.onFrameDrawn(0, BUDGET_US_PER_MINUTE + 1);
+
+        // At double the rate, 1.2 s becomes 2.4 s, more than three quarters of the budget.
+        policy.onFrameDrawn(0, TimeUnit.MILLISECONDS.toMicros(1200));
+        assertFalse(policy.onFrameDrawn(MINUTE_MS, 0));
+
+        assertEquals(15, policy.getFramesPerSecond());
+    }
+
+    @Test
+    public void doesNotStepAboveThePreferredRate() {
+        FrameRatePolicy policy = new FrameRatePolicy(30, BUDGET_US_PER_MINUTE);
+
+        policy.onFrameDrawn(0, 0);
+        assertFalse(policy.onFrameDrawn(MINUTE_MS, 0));
+
+        assertEquals(30, policy.getFramesPerSecond());
+    }
+
+    @Test
+    public void capLowersTheRateAndHoldsItThere() {
+        FrameRatePolicy policy = new FrameRatePolicy(30, BUDGET_US_PER_MINUTE);
+
+        assertTrue(policy.setMaxFramesPerSecond(5));
+        assertEquals(5, policy.getFramesPerSecond());
+
+        policy.onFrameDrawn(0, 0);
+        assertFalse(policy.onFrameDrawn(MINUTE_MS, 0));
+        assertEquals(5, policy.getFramesPerSecond());
+    }
+
+    @Test
+    public void capAboveTheCurrentRateChangesNothingUntilTheNextWindow() {
+        FrameRatePolicy policy = new FrameRatePolicy(30, BUDGET_US_PER_MINUTE);
+        policy.setMaxFramesPerSecond(5);
+
+        assertFalse(policy.setMaxFramesPerSecond(60));
+        assertEquals(5, policy.getFramesPerSecond());
+
+        policy.onFrameDrawn(0, 0);
+        assertTrue(policy.onFrameDrawn(MINUTE_MS, 0));
+        assertEquals(15, policy.getFramesPerSecond());
+    }
+
+    @Test
+    public void vsyncDrivesTheHighestRate() {
+        FrameRatePolicy policy = new FrameRatePolicy(60, BUDGET_US_PER_MINUTE);
+
+        assertTrue(policy.isVsyncDriven());
+    }
+
+    @Test
+    public void alignsFramesToWholeFractionsOfASecond() {
+        FrameRatePolicy policy = new FrameRatePolicy(1, BUDGET_US_PER_MINUTE);
+        assertEquals(750, policy.getDelayToNextFrameMs(10_250));
+        assertEquals(1000, policy.getDelayToNextFrameMs(10_000));
+
+        policy = new FrameRatePolicy(30, BUDGET_US_PER_MINUTE);
+        // Frames every 33.3 ms, rounded up to the next whole millisecond.
+        assertEquals(34, policy.getDelayToNextFrameMs(10_000));
+        assertEquals(24, policy.getDelayToNextFrameMs(10_010));
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.wearable.complications;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class RenderBackendTest {
+
+    @Test
+    public void identicalPixelsMatch() {
+        int[] pixels = {0xff000000, 0xffffffff, 0x80123456};
+
+        assertEquals(0, RenderBackend.countDifferentPixels(pixels, pixels.clone(), 0));
+    }
+
+    @Test
+    public void smallDifferencesInEveryChannelAreTolerated() {
+        int[] software = {0xff808080, 0xff808080, 0xff808080, 0xff808080};
+        int[] hardware = {0xf7808080, 0xff888080, 0xff808880, 0xff808088};
+
+        assertEquals(0, RenderBackend.countDifferentPixels(software, hardware, 8));
+    }
+
+    @Test
+    public void largeDifferencesInAnyChannelCount() {
+        int[] software = {0xff808080, 0xff808080, 0xff808080, 0xff808080, 0xff808080};
+        int[] hardware = {0x00808080, 0xff008080, 0xff800080, 0xff808000, 0xff808080};
+
+        assertEquals(4, RenderBackend.countDifferentPixels(software, hardware, 8));
+    }
+
+    @Test
+    public void pixelDifferingInSeveralChannelsCountsOnce() {
+        int[] software = {0xff000000};
+        int[] hardware = {0xffffffff};
+
+        assertEquals(1, RenderBackend.countDifferentPixels(software, hardware, 8));
+    }
+}
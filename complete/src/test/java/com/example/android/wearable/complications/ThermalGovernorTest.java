@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.wearable.complications;
+
+import static com.example.android.wearable.complications.ThermalGovernor.STATUS_LIGHT;
+import static com.example.android.wearable.complications.ThermalGovernor.STATUS_MODERATE;
+import static com.example.android.wearable.complications.ThermalGovernor.STATUS_NONE;
+import static com.example.android.wearable.complications.ThermalGovernor.STATUS_SEVERE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ThermalGovernorTest {
+
+    private int mStatus = STATUS_NONE;
+
+    @Test
+    public void startsAtNone() {
+        assertEquals(STATUS_NONE, mStatus);
+        assertFalse(onTemperature(300));
+        assertFalse(onTemperature(-50));
+        assertEquals(STATUS_NONE, mStatus);
+    }
+
+    @Test
+    public void entersEachStatusAtItsTemperature() {
+        assertFalse(onTemperature(389));
+        assertTrue(onTemperature(390));
+        assertEquals(STATUS_LIGHT, mStatus);
+        assertTrue(onTemperature(420));
+        assertEquals(STATUS_MODERATE, mStatus);
+        assertTrue(onTemperature(450));
+        assertEquals(STATUS_SEVERE, mStatus);
+    }
+
+    @Test
+    public void jumpsStraightToSevere() {
+        assertTrue(onTemperature(470));
+        assertEquals(STATUS_SEVERE, mStatus);
+    }
+
+    @Test
+    public void leavesAStatusOnlyADegreeBelowItsEntry() {
+        onTemperature(420);
+
+        assertFalse(onTemperature(419));
+        assertFalse(onTemperature(410));
+        assertEquals(STATUS_MODERATE, mStatus);
+
+        assertTrue(onTemperature(409));
+        assertEquals(STATUS_LIGHT, mStatus);
+    }
+
+    @Test
+    public void doesNotFlapAroundAThreshold() {
+        onTemperature(390);
+
+        for (int i = 0; i < 10; i++) {
+            assertFalse(onTemperature(i % 2 == 0 ? 385 : 391));
+        }
+        assertEquals(STATUS_LIGHT, mStatus);
+    }
+
+    @Test
+    public void coolsStraightDownToNone() {
+        onTemperature(460);
+
+        assertTrue(onTemperature(300));
+        assertEquals(STATUS_NONE, mStatus);
+    }
+
+    @Test
+    public void statusesScaleWorkBack() {
+        assertEquals(
+                FrameRatePolicy.VSYNC_FRAMES_PER_SECOND,
+                ThermalGovernor.getMaxFramesPerSecond(STATUS_NONE));
+        assertEquals(
+                ThermalGovernor.SEVERE_MAX_FRAMES_PER_SECOND,
+                ThermalGovernor.getMaxFramesPerSecond(STATUS_SEVERE));
+        assertFalse(ThermalGovernor.defersComplicationWork(STATUS_LIGHT));
+        assertTrue(ThermalGovernor.defersComplicationWork(STATUS_MODERATE));
+        assertFalse(ThermalGovernor.freezesComplicationLayers(STATUS_MODERATE));
+        assertTrue(ThermalGovernor.freezesComplicationLayers(STATUS_SEVERE));
+    }
+
+    /* Steps mStatus the way BatteryTemperatureSource does. Returns whether it changed. */
+    private boolean onTemperature(int temperature) {
+        int status = ThermalGovernor.BatteryTemperatureSource.nextStatus(mStatus, temperature);
+        boolean changed = status != mStatus;
+        mStatus = status;
+        return changed;
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.wearable.complications;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Calendar;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+public class WallClockTest {
+
+    private static final long HOUR_MS = TimeUnit.HOURS.toMillis(1);
+
+    // Not a divisor of any larger unit, so consecutive steps land on varying seconds and millis.
+    private static final long STEP_MS = 61_003;
+
+    private static final int FRAMES_PER_SECOND = 60;
+
+    @Test
+    public void matchesCalendarAcrossSpringForward() {
+        // 02:00 EST becomes 03:00 EDT.
+        assertMatchesCalendarAround("America/New_York", utc(2021, Calendar.MARCH, 14, 7, 0));
+    }
+
+    @Test
+    public void matchesCalendarAcrossFallBack() {
+        // 02:00 EDT becomes 01:00 EST.
+        assertMatchesCalendarAround("America/New_York", utc(2021, Calendar.NOVEMBER, 7, 6, 0));
+    }
+
+    @Test
+    public void matchesCalendarAcrossHalfHourDaylightSavingShift() {
+        // Lord Howe Island moves its clocks by 30 minutes, 02:00 becomes 02:30.
+        assertMatchesCalendarAround("Australia/Lord_Howe", utc(2021, Calendar.OCTOBER, 2, 15, 30));
+    }
+
+    @Test
+    public void matchesCalendarInFortyFiveMinuteZones() {
+        assertMatchesCalendarAround("Asia/Kathmandu", utc(2021, Calendar.JUNE, 1, 0, 0));
+        assertMatchesCalendarAround("Australia/Eucla", utc(2021, Calendar.JUNE, 1, 0, 0));
+        // Chatham Islands daylight saving, 02:45 becomes 03:45.
+        assertMatchesCalendarAround("Pacific/Chatham", utc(2021, Calendar.SEPTEMBER, 25, 14, 0));
+    }
+
+    @Test
+    public void matchesCalendarBeforeTheEpoch() {
+        assertMatchesCalendarAround("UTC", 0);
+        assertMatchesCalendarAround("America/Los_Angeles", 0);
+        assertMatchesCalendarAround("Asia/Kathmandu", 0);
+        assertMatchesCalendarAround("Europe/London", utc(1969, Calendar.JULY, 20, 20, 17));
+    }
+
+    @Test
+    public void splitsTheMillisecondBeforeTheEpoch() {
+        WallClock clock = new WallClock(TimeZone.getTimeZone("UTC"));
+        clock.setTimeInMillis(-1);
+
+        assertEquals(23, clock.getHour());
+        assertEquals(59, clock.getMinute());
+        assertEquals(59, clock.getSecond());
+        assertEquals(999, clock.getMillisecond());
+    }
+
+    @Test
+    public void setTimeZoneDropsTheCachedOffset() {
+        long time = utc(2021, Calendar.JUNE, 1, 12, 0);
+        WallClock clock = new WallClock(TimeZone.getTimeZone("UTC"));
+        clock.setTimeInMillis(time);
+        assertEquals(12, clock.getHour());
+
+        clock.setTimeZone(TimeZone.getTimeZone("Asia/Kathmandu"));
+        clock.setTimeInMillis(time);
+
+        assertEquals(17, clock.getHour());
+        assertEquals(45, clock.getMinute());
+    }
+
+    @Test
+    public void computesHandRotations() {
+        WallClock clock = new WallClock(TimeZone.getTimeZone("UTC"));
+        clock.setTimeInMillis(
+                utc(2021, Calendar.JUNE, 1, 22, 30) + TimeUnit.SECONDS.toMillis(15) + 500);
+
+        assertEquals(315f, clock.getHoursRotation(), 0f);
+        assertEquals(180f, clock.getMinutesRotation(), 0f);
+        assertEquals(93f, clock.getSecondsRotation(), 0f);
+    }
+
+    @Test
+    public void setTimeInMillisDoesNotAllocate() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(
+                threadBean.isThreadAllocatedMemorySupported()
+                        && threadBean.isThreadAllocatedMemoryEnabled());
+        long threadId = Thread.currentThread().getId();
+
+        // Ten seconds of frames within one quarter hour, as in the draw loop between zone
+        // lookups. The first pass loads classes and the zone offset and isn't counted.
+        WallClock clock = new WallClock(TimeZone.getTimeZone("Europe/London"));
+        long start = utc(2021, Calendar.JUNE, 1, 12, 0);
+        drawFrames(clock, start);
+        threadBean.getThreadAllocatedBytes(threadId);
+
+        long allocatedBefore = threadBean.getThreadAllocatedBytes(threadId);
+        drawFrames(clock, start);
+        long allocatedAfter = threadBean.getThreadAllocatedBytes(threadId);
+
+        assertEquals(0, allocatedAfter - allocatedBefore);
+    }
+
+    /* Reads the clock like a frame does, at FRAMES_PER_SECOND for ten seconds from start. */
+    private static float drawFrames(WallClock clock, long start) {
+        float rotations = 0;
+        for (int frame = 0; frame < 10 * FRAMES_PER_SECOND; frame++) {
+            clock.setTimeInMillis(start + frame * 1000L / FRAMES_PER_SECOND);
+            rotations +=
+                    clock.getHoursRotation()
+                            + clock.getMinutesRotation()
+                            + clock.getSecondsRotation();
+        }
+        return rotations;
+    }
+
+    /*
+     * Steps one clock from two hours before to two hours after {@code time}, as the draw loop
+     * would, so the cached zone offset is carried across any transition in between.
+     */
+    private static void assertMatchesCalendarAround(String zoneId, long time) {
+        TimeZone timeZone = TimeZone.getTimeZone(zoneId);
+        assertEquals(zoneId, timeZone.getID());
+        WallClock clock = new WallClock(timeZone);
+        Calendar calendar = Calendar.getInstance(timeZone);
+
+        for (long t = time - 2 * HOUR_MS; t <= time + 2 * HOUR_MS; t += STEP_MS) {
+            clock.setTimeInMillis(t);
+            calendar.setTimeInMillis(t);
+            String message = zoneId + " at " + t;
+            assertEquals(message, calendar.get(Calendar.HOUR_OF_DAY), clock.getHour());
+            assertEquals(message, calendar.get(Calendar.MINUTE), clock.getMinute());
+            assertEquals(message, calendar.get(Calendar.SECOND), clock.getSecond());
+            assertEquals(message, calendar.get(Calendar.MILLISECOND), clock.getMillisecond());
+        }
+    }
+
+    private static long utc(int year, int month, int day, int hour, int minute) {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        calendar.clear();
+        calendar.set(year, month, day, hour, minute);
+        return calendar.getTimeInMillis();
+    }
+}